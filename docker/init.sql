@@ -22,6 +22,49 @@ CREATE INDEX IF NOT EXISTS idx_rag_chunks_file_id ON rag_chunks(file_id);
 -- Note: For cosine distance use vector_cosine_ops.
 CREATE INDEX IF NOT EXISTS idx_rag_chunks_embedding_hnsw
     ON rag_chunks USING hnsw (embedding vector_cosine_ops);
+-- Compact variants (halfvec / binary_quantize expression indexes) are built online by the application
+-- when hybridrag.pgvector.storage.mode is halfvec or binary (see PgVectorIndexMigrator).
+
+-- Full-text leg for hybridrag.rag.retrieve.backend=postgres. The 'simple' configuration (no stemming, no stop
+-- words) keeps mixed-language exam material matchable; queries must use the same configuration.
+ALTER TABLE rag_chunks ADD COLUMN IF NOT EXISTS content_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED;
+CREATE INDEX IF NOT EXISTS idx_rag_chunks_content_tsv ON rag_chunks USING gin (content_tsv);
 
 -- Helpful composite index for time-based cleanup/query patterns (optional but safe)
-CREATE INDEX IF NOT EXISTS idx_rag_chunks_created_at ON rag_chunks(created_at);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_rag_chunks_created_at ON rag_chunks(created_at);
+
+-- Uploaded files registry: one row per distinct PDF content (sha256).
+-- Lets identical re-uploads reuse the already-indexed fileId instead of re-chunking / re-embedding.
+CREATE TABLE IF NOT EXISTS rag_files (
+    file_id varchar PRIMARY KEY,
+    sha256 char(64) NOT NULL UNIQUE,
+    file_name varchar,
+    chunks int NOT NULL,
+    created_at timestamp NOT NULL DEFAULT now()
+    );
+
+-- Asynchronous ingest jobs with per-stage progress (polled via GET /api/rag/jobs/{jobId}).
+CREATE TABLE IF NOT EXISTS rag_ingest_jobs (
+    job_id uuid PRIMARY KEY,
+    file_id varchar NOT NULL,
+    file_name varchar,
+    sha256 char(64) NOT NULL,
+    status varchar NOT NULL,
+    stage varchar,
+    pages_extracted int NOT NULL DEFAULT 0,
+    chunks_total int NOT NULL DEFAULT 0,
+    chunks_embedded int NOT NULL DEFAULT 0,
+    chunks_indexed int NOT NULL DEFAULT 0,
+    error text,
+    created_at timestamp NOT NULL DEFAULT now(),
+    updated_at timestamp NOT NULL DEFAULT now()
+    );
+
+CREATE INDEX IF NOT EXISTS idx_rag_ingest_jobs_sha256 ON rag_ingest_jobs(sha256);
+CREATE INDEX IF NOT EXISTS idx_rag_ingest_jobs_file_id ON rag_ingest_jobs(file_id);
+
+-- Active jobs belong to the instance running them, which renews heartbeat_at while it is alive. A job whose
+-- heartbeat is older than the lease (hybridrag.ingest.jobs.lease-ms) lost its owner and is failed by any instance.
+ALTER TABLE rag_ingest_jobs ADD COLUMN IF NOT EXISTS owner varchar;
+ALTER TABLE rag_ingest_jobs ADD COLUMN IF NOT EXISTS heartbeat_at timestamp NOT NULL DEFAULT now();
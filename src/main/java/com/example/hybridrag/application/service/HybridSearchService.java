@@ -1,25 +1,35 @@
 package com.example.hybridrag.application.service;
 
+import com.example.hybridrag.infrastructure.config.RetrievalBackend;
 import com.example.hybridrag.infrastructure.search.ElasticsearchService;
+import com.example.hybridrag.infrastructure.search.EsVectorBackfill;
+import com.example.hybridrag.infrastructure.search.HotLexicalIndex;
 import com.example.hybridrag.infrastructure.vector.VectorSearchService;
-import java.sql.Array;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.stream.Collectors;
-import javax.sql.DataSource;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -30,50 +40,453 @@ public class HybridSearchService {
 
     private final VectorSearchService vectorSearchService;
     private final ElasticsearchService elasticsearchService;
-    private final DataSource dataSource;
-    private final Executor executor;
+    private final HotLexicalIndex lexicalIndex;
+    private final EsVectorBackfill vectorBackfill;
+    private final SearchLeg vectorLeg;
+    private final SearchLeg bm25Leg;
+    private final SearchLeg postgresLeg;
+    private final SearchLeg elasticsearchLeg;
+    private final SearchLeg vectorBatchLeg;
+    private final SearchLeg bm25BatchLeg;
+    private final SearchLeg bm25FilesLeg;
+    private final Executor multiFileExecutor;
+    private final RetrievalBackend backend;
+    private final RetrievalCache retrievalCache;
 
     private final int topK;
     private final double alpha;
     private final int mmrK;
     private final double mmrLambda;
+    private final int mmrCandidateFactor;
+    private final int mmrCandidateMin;
+    private final int maxBatchQueries;
+    private final int multiMaxFiles;
+    private final int multiParallelism;
+    private final long multiDeadlineNanos;
+    private final double multiEarlyStopScore;
+    private final RetrievalCache.Params cacheParams;
 
     public HybridSearchService(
             VectorSearchService vectorSearchService,
             ElasticsearchService elasticsearchService,
-            DataSource dataSource,
-            Executor executor,
+            HotLexicalIndex lexicalIndex,
+            EsVectorBackfill vectorBackfill,
+            @Qualifier("hybridSearchExecutor") Executor executor,
+            @Qualifier("multiFileSearchExecutor") Executor multiFileExecutor,
+            RetrievalCache retrievalCache,
+            RetrievalBackend backend,
+            MeterRegistry meterRegistry,
             @Value("${hybridrag.rag.retrieve.topK}") int topK,
             @Value("${hybridrag.rag.retrieve.alpha}") double alpha,
             @Value("${hybridrag.rag.retrieve.mmr.k}") int mmrK,
-            @Value("${hybridrag.rag.retrieve.mmr.lambda}") double mmrLambda
+            @Value("${hybridrag.rag.retrieve.mmr.lambda}") double mmrLambda,
+            @Value("${hybridrag.rag.retrieve.mmr.candidate-factor}") int mmrCandidateFactor,
+            @Value("${hybridrag.rag.retrieve.mmr.candidate-min}") int mmrCandidateMin,
+            @Value("${hybridrag.rag.retrieve.deadline.vector-ms}") long vectorDeadlineMs,
+            @Value("${hybridrag.rag.retrieve.deadline.bm25-ms}") long bm25DeadlineMs,
+            @Value("${hybridrag.rag.retrieve.hedge.enabled}") boolean hedge,
+            @Value("${hybridrag.rag.retrieve.hedge.min-delay-ms}") long hedgeMinDelayMs,
+            @Value("${hybridrag.rag.retrieve.hedge.max-in-flight}") int hedgeMaxInFlight,
+            @Value("${hybridrag.rag.retrieve.batch.max-queries}") int maxBatchQueries,
+            @Value("${hybridrag.rag.retrieve.multi.max-files}") int multiMaxFiles,
+            @Value("${hybridrag.rag.retrieve.multi.parallelism}") int multiParallelism,
+            @Value("${hybridrag.rag.retrieve.multi.deadline-ms}") long multiDeadlineMs,
+            @Value("${hybridrag.rag.retrieve.multi.early-stop-score}") double multiEarlyStopScore
     ) {
         this.vectorSearchService = vectorSearchService;
         this.elasticsearchService = elasticsearchService;
-        this.dataSource = dataSource;
-        this.executor = executor;
+        this.lexicalIndex = lexicalIndex;
+        this.vectorBackfill = vectorBackfill;
+        Semaphore hedgeSlots = new Semaphore(Math.max(1, hedgeMaxInFlight));
+        this.vectorLeg = new SearchLeg("vector", executor, meterRegistry, vectorDeadlineMs, hedge, hedgeMinDelayMs, hedgeSlots);
+        this.bm25Leg = new SearchLeg("bm25", executor, meterRegistry, bm25DeadlineMs, hedge, hedgeMinDelayMs, hedgeSlots);
+        // Single-request backends do both legs (and embed the query), so they get the vector leg's budget.
+        this.postgresLeg = new SearchLeg("postgres", executor, meterRegistry, vectorDeadlineMs, hedge, hedgeMinDelayMs, hedgeSlots);
+        this.elasticsearchLeg = new SearchLeg("elasticsearch", executor, meterRegistry, vectorDeadlineMs, hedge, hedgeMinDelayMs, hedgeSlots);
+        // Batches keep their own latency history (hedging a whole batch is not worth it).
+        this.vectorBatchLeg = new SearchLeg("vector-batch", executor, meterRegistry, vectorDeadlineMs, false, hedgeMinDelayMs, hedgeSlots);
+        this.bm25BatchLeg = new SearchLeg("bm25-batch", executor, meterRegistry, bm25DeadlineMs, false, hedgeMinDelayMs, hedgeSlots);
+        this.bm25FilesLeg = new SearchLeg("bm25-files", executor, meterRegistry, bm25DeadlineMs, false, hedgeMinDelayMs, hedgeSlots);
+        this.multiFileExecutor = multiFileExecutor;
+        this.backend = backend;
+        this.retrievalCache = retrievalCache;
         this.topK = topK;
         this.alpha = clamp01(alpha);
         this.mmrK = Math.max(1, mmrK);
         this.mmrLambda = clamp01(mmrLambda);
+        this.mmrCandidateFactor = Math.max(1, mmrCandidateFactor);
+        this.mmrCandidateMin = Math.max(1, mmrCandidateMin);
+        this.maxBatchQueries = Math.max(1, maxBatchQueries);
+        this.multiMaxFiles = Math.max(1, multiMaxFiles);
+        this.multiParallelism = Math.max(1, multiParallelism);
+        this.multiDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, multiDeadlineMs));
+        // > 1 can never be reached: early stop disabled.
+        this.multiEarlyStopScore = multiEarlyStopScore;
+        this.cacheParams = new RetrievalCache.Params(topK, this.alpha, this.mmrK, this.mmrLambda,
+                this.mmrCandidateFactor, this.mmrCandidateMin);
     }
 
     public List<ScoredChunk> hybridSearch(String fileId, String query) {
         long t0 = System.nanoTime();
 
-        CompletableFuture<List<ScoredChunk>> vecF = CompletableFuture.supplyAsync(
-                () -> vectorSearchService.vectorSearch(fileId, query, topK),
-                executor
+        RetrievalCache.Lookup cached = retrievalCache.enabled() ? retrievalCache.get(fileId, query, cacheParams) : null;
+        if (cached != null && cached.result() != null) {
+            log.info("event=hybrid_search_cached fileId={} outN={} ms={}",
+                    fileId, cached.result().size(), (System.nanoTime() - t0) / 1_000_000);
+            return cached.result();
+        }
+
+        Candidates candidates = switch (backend) {
+            case DUAL -> dualCandidates(fileId, query, t0);
+            case POSTGRES -> postgresCandidates(fileId, query, t0);
+            // Documents still waiting for their embedding would be invisible to kNN.
+            case ELASTICSEARCH -> vectorBackfill.vectorsReady(fileId)
+                    ? elasticsearchCandidates(fileId, query, t0)
+                    : dualCandidates(fileId, query, t0);
+        };
+
+        List<ScoredChunk> fused = candidates.fused() ? sortByFused(candidates.merged()) : fuseScores(candidates.merged());
+
+        // MMR diversification
+        List<ScoredChunk> diversified = mmrDiversify(fused, candidates.embeddings(), mmrK, mmrLambda);
+
+        // "Rerank" (lightweight): final sort by fused score then small lexical overlap bonus
+        List<ScoredChunk> reranked = rerank(diversified, query);
+
+        long t1 = System.nanoTime();
+        log.info("event=hybrid_search_done fileId={} backend={} topK={} alpha={} vecN={} bm25N={} mergedN={} outN={} degraded={} ms={}",
+                fileId, backend, topK, alpha, candidates.vecN(), candidates.bm25N(), fused.size(), reranked.size(),
+                candidates.degraded(), (t1 - t0) / 1_000_000);
+
+        // Partial results are not cached; the next call retries the missing leg.
+        if (cached != null && "none".equals(candidates.degraded())) {
+            retrievalCache.put(cached, reranked);
+        }
+        return reranked;
+    }
+
+    /**
+     * Several queries over one file, results in query order. With the dual backend the uncached queries share one
+     * embedding call, one pgvector statement, one {@code _msearch} and one MMR embedding lookup; the single-request
+     * backends run {@link #hybridSearch} per query.
+     */
+    public List<List<ScoredChunk>> hybridSearchBatch(String fileId, List<String> queries) {
+        if (queries.size() > maxBatchQueries) {
+            throw new IllegalArgumentException("At most " + maxBatchQueries + " queries per batch");
+        }
+        if (backend != RetrievalBackend.DUAL) {
+            return queries.stream().map(q -> hybridSearch(fileId, q)).toList();
+        }
+        long t0 = System.nanoTime();
+        int n = queries.size();
+
+        List<List<ScoredChunk>> out = new ArrayList<>(Collections.nCopies(n, null));
+        RetrievalCache.Lookup[] lookups = new RetrievalCache.Lookup[n];
+        List<Integer> todo = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            lookups[i] = retrievalCache.enabled() ? retrievalCache.get(fileId, queries.get(i), cacheParams) : null;
+            if (lookups[i] != null && lookups[i].result() != null) {
+                out.set(i, lookups[i].result());
+            } else {
+                todo.add(i);
+            }
+        }
+        if (todo.isEmpty()) {
+            log.info("event=hybrid_search_batch_cached fileId={} queries={} ms={}", fileId, n, (System.nanoTime() - t0) / 1_000_000);
+            return out;
+        }
+        List<String> pending = todo.stream().map(queries::get).toList();
+
+        CompletableFuture<List<VectorSearchService.VectorHits>> vecF = vectorBatchLeg.start(
+                () -> vectorSearchService.vectorSearchBatch(fileId, pending, topK)
+        );
+
+        List<List<ElasticsearchService.EsHit>> bm25Local = new ArrayList<>(pending.size());
+        List<Integer> bm25Remote = new ArrayList<>();
+        for (int j = 0; j < pending.size(); j++) {
+            Optional<List<ElasticsearchService.EsHit>> local = lexicalIndex.search(fileId, pending.get(j), topK);
+            bm25Local.add(local.orElse(null));
+            if (local.isEmpty()) {
+                bm25Remote.add(j);
+            }
+        }
+        CompletableFuture<List<List<ElasticsearchService.EsHit>>> bm25F = bm25Remote.isEmpty()
+                ? CompletableFuture.completedFuture(bm25Local)
+                : bm25BatchLeg.start(() -> {
+                    List<List<ElasticsearchService.EsHit>> remote = elasticsearchService.bm25SearchBatch(
+                            fileId, bm25Remote.stream().map(pending::get).toList(), topK);
+                    List<List<ElasticsearchService.EsHit>> all = new ArrayList<>(bm25Local);
+                    for (int r = 0; r < bm25Remote.size(); r++) {
+                        all.set(bm25Remote.get(r), remote.get(r));
+                    }
+                    return all;
+                });
+
+        SearchLeg.Outcome<List<VectorSearchService.VectorHits>> vecOut = vectorBatchLeg.await(vecF, t0, fileId);
+        SearchLeg.Outcome<List<List<ElasticsearchService.EsHit>>> bm25Out = bm25BatchLeg.await(bm25F, t0, fileId);
+        if (!vecOut.ok() && !bm25Out.ok()) {
+            throw new IllegalStateException("Hybrid batch search failed for fileId=" + fileId
+                    + ": vector=" + vecOut.degraded() + " bm25=" + bm25Out.degraded());
+        }
+
+        Map<UUID, float[]> known = new HashMap<>();
+        List<List<ScoredChunk>> fused = new ArrayList<>(pending.size());
+        boolean[] bm25Failed = new boolean[pending.size()];
+        for (int j = 0; j < pending.size(); j++) {
+            List<ScoredChunk> vec = List.of();
+            if (vecOut.ok()) {
+                VectorSearchService.VectorHits hits = vecOut.value().get(j);
+                vec = hits.chunks();
+                known.putAll(hits.embeddings());
+            }
+            // A null entry is a failed _msearch item: that query runs vector-only and counts as degraded.
+            List<ElasticsearchService.EsHit> bm25 = bm25Out.ok() ? bm25Out.value().get(j) : null;
+            bm25Failed[j] = bm25 == null;
+            fused.add(fuseScores(merge(vec, bm25 == null ? List.of() : bm25)));
+        }
+
+        List<List<ScoredChunk>> diversified = mmrDiversifyAll(fused, known, mmrK, mmrLambda);
+
+        int bm25Degraded = 0;
+        for (int j = 0; j < pending.size(); j++) {
+            int i = todo.get(j);
+            List<ScoredChunk> reranked = rerank(diversified.get(j), pending.get(j));
+            out.set(i, reranked);
+            if (bm25Failed[j]) {
+                bm25Degraded++;
+            }
+            // Partial results are not cached; the next call retries the missing leg.
+            if (lookups[i] != null && vecOut.ok() && !bm25Failed[j]) {
+                retrievalCache.put(lookups[i], reranked);
+            }
+        }
+
+        log.info("event=hybrid_search_batch_done fileId={} queries={} cached={} bm25Local={} degraded={} bm25DegradedN={} ms={}",
+                fileId, n, n - todo.size(), pending.size() - bm25Remote.size(),
+                !vecOut.ok() ? "vector" : bm25Degraded > 0 ? "bm25" : "none", bm25Degraded,
+                (System.nanoTime() - t0) / 1_000_000);
+        return out;
+    }
+
+    /**
+     * One query over several files (scatter-gather). Each file is searched on its own, at most
+     * {@code multi.parallelism} at a time on the multi-file pool (apart from the single-file legs' executor), so
+     * per-file plans and the in-memory vector indexes still apply; with the dual backend BM25 is a single
+     * Elasticsearch request over all files instead, so every BM25 score comes from the same statistics. All
+     * candidates then go through one global {@link #fuseScores} normalization, whatever the backend, MMR over the
+     * combined pool and rerank.
+     * <p>
+     * Files still queued are skipped once the pool already holds enough strong candidates (vector score at least
+     * {@code multi.early-stop-score}) or the {@code multi.deadline-ms} budget is spent; searches still running are
+     * cancelled so they do not hold executor threads. Multi-file results are not cached (the cache is per file).
+     */
+    public List<ScoredChunk> hybridSearchFiles(List<String> fileIds, String query) {
+        List<String> files = fileIds.stream().distinct().toList();
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("fileIds must not be empty");
+        }
+        if (files.size() > multiMaxFiles) {
+            throw new IllegalArgumentException("At most " + multiMaxFiles + " files per search");
+        }
+        if (files.size() == 1) {
+            return hybridSearch(files.get(0), query);
+        }
+        long t0 = System.nanoTime();
+        long deadline = t0 + multiDeadlineNanos;
+        int pool = Math.max(mmrK * mmrCandidateFactor, mmrCandidateMin);
+        String label = "files:" + files.size();
+
+        CompletableFuture<List<ElasticsearchService.EsHit>> bm25F = backend == RetrievalBackend.DUAL
+                ? bm25FilesLeg.start(() -> elasticsearchService.bm25SearchFiles(files, query, Math.max(topK, pool) * 2))
+                : null;
+
+        BlockingQueue<FileResult> completed = new LinkedBlockingQueue<>();
+        List<Future<FileResult>> tasks = new ArrayList<>(files.size());
+        Iterator<String> queue = files.iterator();
+        int inFlight = 0;
+        while (inFlight < multiParallelism && queue.hasNext()) {
+            tasks.add(submitFile(queue.next(), query, completed));
+            inFlight++;
+        }
+
+        List<ScoredChunk> vec = new ArrayList<>();
+        Map<UUID, float[]> known = new HashMap<>();
+        int searched = 0;
+        int failed = 0;
+        int strong = 0;
+        boolean earlyStop = false;
+        try {
+            while (inFlight > 0) {
+                long remaining = deadline - System.nanoTime();
+                FileResult r = remaining <= 0 ? null : completed.poll(remaining, TimeUnit.NANOSECONDS);
+                if (r == null) {
+                    break;
+                }
+                inFlight--;
+                if (r.error() != null) {
+                    failed++;
+                    log.warn("event=hybrid_search_file_failed fileId={} msg={}", r.fileId(), r.error().getMessage());
+                } else {
+                    searched++;
+                    vec.addAll(r.chunks());
+                    known.putAll(r.embeddings());
+                    for (ScoredChunk sc : r.chunks()) {
+                        if (sc.vectorScore() >= multiEarlyStopScore) {
+                            strong++;
+                        }
+                    }
+                }
+                if (strong >= pool && queue.hasNext()) {
+                    earlyStop = true;
+                    break;
+                }
+                if (queue.hasNext()) {
+                    tasks.add(submitFile(queue.next(), query, completed));
+                    inFlight++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Stragglers past the deadline or the early stop would only be ignored; free their threads.
+            for (Future<FileResult> task : tasks) {
+                task.cancel(true);
+            }
+        }
+
+        List<ElasticsearchService.EsHit> bm25 = List.of();
+        if (bm25F != null) {
+            SearchLeg.Outcome<List<ElasticsearchService.EsHit>> bm25Out = bm25FilesLeg.await(bm25F, t0, label);
+            if (bm25Out.ok()) {
+                bm25 = bm25Out.value();
+            }
+        }
+        if (searched == 0 && bm25.isEmpty()) {
+            throw new IllegalStateException("Hybrid search failed for " + files.size() + " files: searched=0 failed=" + failed);
+        }
+
+        // Per-file Elasticsearch scores are only fused within each request; re-fuse them on the shared scale.
+        List<ScoredChunk> fused = fuseScores(backend == RetrievalBackend.DUAL ? merge(vec, bm25) : vec);
+        List<ScoredChunk> diversified = mmrDiversify(fused, known, mmrK, mmrLambda);
+        List<ScoredChunk> reranked = rerank(diversified, query);
+
+        log.info("event=hybrid_search_files_done files={} searched={} failed={} skipped={} earlyStop={} backend={} "
+                        + "vecN={} bm25N={} mergedN={} outN={} ms={}",
+                files.size(), searched, failed, files.size() - searched - failed, earlyStop, backend,
+                vec.size(), bm25.size(), fused.size(), reranked.size(), (System.nanoTime() - t0) / 1_000_000);
+        return reranked;
+    }
+
+    private record FileResult(String fileId, List<ScoredChunk> chunks, Map<UUID, float[]> embeddings, Throwable error) {
+    }
+
+    /**
+     * Starts the per-file search for {@link #hybridSearchFiles}; its result (or failure) lands in {@code completed}
+     * unless the returned task is cancelled first.
+     */
+    private Future<FileResult> submitFile(String fileId, String query, BlockingQueue<FileResult> completed) {
+        FutureTask<FileResult> task = new FutureTask<>(() -> searchFile(fileId, query)) {
+            @Override
+            protected void done() {
+                switch (state()) {
+                    case SUCCESS -> completed.add(resultNow());
+                    case FAILED -> completed.add(new FileResult(fileId, List.of(), Map.of(), exceptionNow()));
+                    default -> {
+                        // cancelled: nobody is waiting for it
+                    }
+                }
+            }
+        };
+        try {
+            multiFileExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            completed.add(new FileResult(fileId, List.of(), Map.of(), e));
+        }
+        return task;
+    }
+
+    /**
+     * Per-file candidates: the vector leg for dual (BM25 is searched across files), the whole single-request search
+     * otherwise.
+     */
+    private FileResult searchFile(String fileId, String query) {
+        return switch (backend) {
+            case DUAL -> {
+                VectorSearchService.VectorHits hits = vectorSearchService.vectorSearch(fileId, query, topK);
+                yield new FileResult(fileId, hits.chunks(), hits.embeddings(), null);
+            }
+            case POSTGRES -> {
+                VectorSearchService.HybridHits hits = vectorSearchService.hybridSearch(fileId, query, topK);
+                yield new FileResult(fileId, hits.chunks(), hits.embeddings(), null);
+            }
+            case ELASTICSEARCH -> {
+                if (!vectorBackfill.vectorsReady(fileId)) {
+                    VectorSearchService.VectorHits hits = vectorSearchService.vectorSearch(fileId, query, topK);
+                    List<ScoredChunk> vec = hits.chunks().stream().map(HybridSearchService::toKnnScale).toList();
+                    List<ScoredChunk> merged = merge(vec, elasticsearchService.bm25Search(fileId, query, topK));
+                    yield new FileResult(fileId, merged, hits.embeddings(), null);
+                }
+                ElasticsearchService.HybridHits hits = elasticsearchService.hybridSearch(fileId, query, topK, alpha);
+                yield new FileResult(fileId, hits.chunks(), hits.embeddings(), null);
+            }
+        };
+    }
+
+    /**
+     * pgvector's 1 / (1 + distance) as Elasticsearch's kNN score (1 + cosine) / 2, so files served the dual way
+     * share one vector scale with the kNN ones in the multi-file fusion.
+     */
+    private static ScoredChunk toKnnScale(ScoredChunk sc) {
+        double distance = sc.vectorScore() <= 0.0 ? 2.0 : 1.0 / sc.vectorScore() - 1.0;
+        return new ScoredChunk(
+                sc.id(),
+                sc.fileId(),
+                sc.content(),
+                sc.metadata(),
+                clamp01(1.0 - distance / 2.0),
+                sc.bm25Score(),
+                sc.fusedScore()
         );
+    }
 
-        CompletableFuture<List<ElasticsearchService.EsHit>> bm25F = CompletableFuture.supplyAsync(
-                () -> elasticsearchService.bm25Search(fileId, query, topK),
-                executor
+    /**
+     * Merged, not yet fused candidates of one query, with whatever embeddings came back alongside them.
+     *
+     * @param degraded leg that missed its deadline or failed ("vector", "bm25"), or "none"
+     * @param fused    fused scores already computed by the backend
+     */
+    private record Candidates(List<ScoredChunk> merged, Map<UUID, float[]> embeddings, int vecN, int bm25N,
+                              String degraded, boolean fused) {
+    }
+
+    private Candidates dualCandidates(String fileId, String query, long t0) {
+        CompletableFuture<VectorSearchService.VectorHits> vecF = vectorLeg.start(
+                () -> vectorSearchService.vectorSearch(fileId, query, topK)
         );
 
-        List<ScoredChunk> vec = vecF.join();
-        List<ElasticsearchService.EsHit> bm25 = bm25F.join();
+        // A file ingested by this JVM is usually still in the in-memory BM25 index (microseconds, no refresh lag).
+        Optional<List<ElasticsearchService.EsHit>> local = lexicalIndex.search(fileId, query, topK);
+        CompletableFuture<List<ElasticsearchService.EsHit>> bm25F = local.isPresent()
+                ? CompletableFuture.completedFuture(local.get())
+                : bm25Leg.start(() -> elasticsearchService.bm25Search(fileId, query, topK));
+
+        // Each leg waits only until its own deadline; a missing leg degrades to single-source fusion.
+        SearchLeg.Outcome<VectorSearchService.VectorHits> vecOut = vectorLeg.await(vecF, t0, fileId);
+        SearchLeg.Outcome<List<ElasticsearchService.EsHit>> bm25Out = bm25Leg.await(bm25F, t0, fileId);
+        if (!vecOut.ok() && !bm25Out.ok()) {
+            throw new IllegalStateException("Hybrid search failed for fileId=" + fileId
+                    + ": vector=" + vecOut.degraded() + " bm25=" + bm25Out.degraded());
+        }
 
+        VectorSearchService.VectorHits vecHits = vecOut.ok() ? vecOut.value() : VectorSearchService.VectorHits.empty();
+        List<ScoredChunk> vec = vecHits.chunks();
+        List<ElasticsearchService.EsHit> bm25 = bm25Out.ok() ? bm25Out.value() : List.of();
+
+        String degraded = vecOut.ok() && bm25Out.ok() ? "none" : (vecOut.ok() ? "bm25" : "vector");
+        return new Candidates(merge(vec, bm25), vecHits.embeddings(), vec.size(), bm25.size(), degraded, false);
+    }
+
+    private static List<ScoredChunk> merge(List<ScoredChunk> vec, List<ElasticsearchService.EsHit> bm25) {
         Map<UUID, ScoredChunk> merged = new HashMap<>();
 
         for (ScoredChunk sc : vec) {
@@ -103,21 +516,42 @@ public class HybridSearchService {
                 ));
             }
         }
+        return new ArrayList<>(merged.values());
+    }
 
-        List<ScoredChunk> fused = fuseScores(new ArrayList<>(merged.values()));
-
-        // MMR diversification
-        List<ScoredChunk> diversified = mmrDiversify(fused, mmrK, mmrLambda);
-
-        // "Rerank" (lightweight): final sort by fused score then small lexical overlap bonus
-        List<ScoredChunk> reranked = rerank(diversified, query);
+    /**
+     * Vector and full-text candidates, already merged, from a single Postgres statement. There is only one leg,
+     * so a miss is a failure rather than a degradation.
+     */
+    private Candidates postgresCandidates(String fileId, String query, long t0) {
+        SearchLeg.Outcome<VectorSearchService.HybridHits> out = postgresLeg.await(
+                postgresLeg.start(() -> vectorSearchService.hybridSearch(fileId, query, topK)), t0, fileId);
+        if (!out.ok()) {
+            throw new IllegalStateException("Hybrid search failed for fileId=" + fileId + ": postgres=" + out.degraded());
+        }
+        VectorSearchService.HybridHits hits = out.value();
+        return new Candidates(hits.chunks(), hits.embeddings(), hits.vectorN(), hits.lexicalN(), "none", false);
+    }
 
-        long t1 = System.nanoTime();
-        log.info("event=hybrid_search_done fileId={} topK={} alpha={} vecN={} bm25N={} mergedN={} outN={} ms={}",
-                fileId, topK, alpha, vec.size(), bm25.size(), fused.size(), reranked.size(),
-                (t1 - t0) / 1_000_000);
+    /**
+     * kNN + BM25 in one Elasticsearch request; ES already sums the alpha-weighted legs, so only MMR and rerank
+     * run here.
+     */
+    private Candidates elasticsearchCandidates(String fileId, String query, long t0) {
+        SearchLeg.Outcome<ElasticsearchService.HybridHits> out = elasticsearchLeg.await(
+                elasticsearchLeg.start(() -> elasticsearchService.hybridSearch(fileId, query, topK, alpha)), t0, fileId);
+        if (!out.ok()) {
+            throw new IllegalStateException("Hybrid search failed for fileId=" + fileId + ": elasticsearch=" + out.degraded());
+        }
+        ElasticsearchService.HybridHits hits = out.value();
+        int lexical = (int) hits.chunks().stream().filter(sc -> sc.bm25Score() > 0.0).count();
+        return new Candidates(hits.chunks(), hits.embeddings(), hits.embeddings().size(), lexical, "none", true);
+    }
 
-        return reranked;
+    private static List<ScoredChunk> sortByFused(List<ScoredChunk> items) {
+        List<ScoredChunk> out = new ArrayList<>(items);
+        out.sort(Comparator.comparingDouble(ScoredChunk::fusedScore).reversed());
+        return out;
     }
 
     private List<ScoredChunk> fuseScores(List<ScoredChunk> items) {
@@ -150,70 +584,54 @@ public class HybridSearchService {
         return out;
     }
 
-    private List<ScoredChunk> mmrDiversify(List<ScoredChunk> ranked, int k, double lambda) {
-        if (ranked.isEmpty()) {
-            return ranked;
-        }
-
-        int candidateCap = Math.min(ranked.size(), Math.max(k * 4, 20));
-        List<ScoredChunk> candidates = ranked.subList(0, candidateCap);
-
-        Map<UUID, double[]> embeddings = fetchEmbeddings(
-                candidates.stream().map(ScoredChunk::id).collect(Collectors.toList())
-        );
-
-        List<ScoredChunk> selected = new ArrayList<>(k);
-        HashSet<UUID> selectedIds = new HashSet<>();
+    private List<ScoredChunk> mmrDiversify(List<ScoredChunk> ranked, Map<UUID, float[]> known, int k, double lambda) {
+        return mmrDiversifyAll(List.of(ranked), known, k, lambda).get(0);
+    }
 
-        // Start with best fused
-        for (ScoredChunk sc : candidates) {
-            if (embeddings.containsKey(sc.id())) {
-                selected.add(sc);
-                selectedIds.add(sc.id());
-                break;
+    /**
+     * MMR over each ranked list's candidate pool, with one embedding lookup shared by all pools.
+     */
+    private List<List<ScoredChunk>> mmrDiversifyAll(List<List<ScoredChunk>> rankedLists, Map<UUID, float[]> known,
+                                                    int k, double lambda) {
+        List<List<ScoredChunk>> pools = new ArrayList<>(rankedLists.size());
+        // Vector hits already carry their embedding; only BM25-only candidates need a lookup.
+        Set<UUID> missing = new LinkedHashSet<>();
+        for (List<ScoredChunk> ranked : rankedLists) {
+            int candidateCap = Math.min(ranked.size(), Math.max(k * mmrCandidateFactor, mmrCandidateMin));
+            List<ScoredChunk> candidates = ranked.subList(0, candidateCap);
+            pools.add(candidates);
+            for (ScoredChunk sc : candidates) {
+                if (!known.containsKey(sc.id())) {
+                    missing.add(sc.id());
+                }
             }
         }
 
-        while (selected.size() < Math.min(k, candidates.size())) {
-            ScoredChunk best = null;
-            double bestScore = -Double.MAX_VALUE;
-
-            for (ScoredChunk c : candidates) {
-                if (selectedIds.contains(c.id())) {
-                    continue;
-                }
-                double[] ce = embeddings.get(c.id());
-                if (ce == null) {
-                    continue;
-                }
-
-                double maxSimToSelected = 0.0;
-                for (ScoredChunk s : selected) {
-                    double[] se = embeddings.get(s.id());
-                    if (se == null) {
-                        continue;
-                    }
-                    maxSimToSelected = Math.max(maxSimToSelected, cosine(ce, se));
-                }
-
-                // relevance: fusedScore, diversity: penalize similarity to selected
-                double mmr = lambda * c.fusedScore() - (1.0 - lambda) * maxSimToSelected;
-                if (mmr > bestScore) {
-                    bestScore = mmr;
-                    best = c;
-                }
+        Map<UUID, float[]> embeddings = new HashMap<>(known);
+        boolean noVectors = false;
+        try {
+            embeddings.putAll(vectorSearchService.fetchEmbeddings(missing));
+        } catch (RuntimeException e) {
+            if (known.isEmpty()) {
+                // Vector leg degraded and pgvector unreachable: no vectors at all, keep fused order.
+                log.warn("event=mmr_skipped reason=embeddings_unavailable msg={}", e.getMessage());
+                noVectors = true;
+            } else {
+                log.warn("event=mmr_partial reason=embeddings_unavailable missing={} msg={}", missing.size(), e.getMessage());
             }
+        }
 
-            if (best == null) {
-                break;
+        List<List<ScoredChunk>> out = new ArrayList<>(pools.size());
+        for (List<ScoredChunk> candidates : pools) {
+            if (candidates.isEmpty()) {
+                out.add(candidates);
+            } else if (noVectors) {
+                out.add(candidates.subList(0, Math.min(k, candidates.size())));
+            } else {
+                out.add(MmrSelector.select(candidates, embeddings, k, lambda));
             }
-            selected.add(best);
-            selectedIds.add(best.id());
         }
-
-        // Keep original order preference by fusedScore among selected, stable
-        selected.sort(Comparator.comparingDouble(ScoredChunk::fusedScore).reversed());
-        return selected;
+        return out;
     }
 
     private List<ScoredChunk> rerank(List<ScoredChunk> items, String query) {
@@ -242,76 +660,6 @@ public class HybridSearchService {
         return out;
     }
 
-    private Map<UUID, double[]> fetchEmbeddings(List<UUID> ids) {
-        if (ids == null || ids.isEmpty()) {
-            return Map.of();
-        }
-        Map<UUID, double[]> out = new HashMap<>();
-
-        try (Connection conn = dataSource.getConnection()) {
-            Array uuidArray = conn.createArrayOf("uuid", ids.toArray());
-            try (var ps = conn.prepareStatement("SELECT id, embedding::text AS embedding_text FROM rag_chunks WHERE id = ANY(?)")) {
-                ps.setArray(1, uuidArray);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        UUID id = (UUID) rs.getObject("id");
-                        String v = rs.getString("embedding_text");
-                        double[] parsed = parsePgVectorText(v);
-                        if (parsed != null) {
-                            out.put(id, parsed);
-                        }
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to fetch embeddings for MMR", e);
-        }
-
-        return out;
-    }
-
-    // pgvector text format: [0.1,0.2,...]
-    private static double[] parsePgVectorText(String text) {
-        if (text == null) {
-            return null;
-        }
-        String s = text.trim();
-        if (s.startsWith("[")) {
-            s = s.substring(1);
-        }
-        if (s.endsWith("]")) {
-            s = s.substring(0, s.length() - 1);
-        }
-        s = s.trim();
-        if (s.isEmpty()) {
-            return null;
-        }
-        String[] parts = s.split(",");
-        double[] v = new double[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            v[i] = Double.parseDouble(parts[i].trim());
-        }
-        return v;
-    }
-
-    private static double cosine(double[] a, double[] b) {
-        if (a.length != b.length) {
-            return 0.0;
-        }
-        double dot = 0.0;
-        double na = 0.0;
-        double nb = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            dot += a[i] * b[i];
-            na += a[i] * a[i];
-            nb += b[i] * b[i];
-        }
-        if (na == 0.0 || nb == 0.0) {
-            return 0.0;
-        }
-        return dot / (Math.sqrt(na) * Math.sqrt(nb));
-    }
-
     private static double normalize(double v, double min, double max) {
         if (Double.isNaN(v) || Double.isInfinite(v)) {
             return 0.0;
@@ -0,0 +1,95 @@
+package com.example.hybridrag.application.service;
+
+import com.example.hybridrag.infrastructure.vector.VectorMath;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maximal Marginal Relevance over fused candidates.
+ * <p>
+ * Embeddings are normalized once into one contiguous matrix, so cosine is a plain dot product. Each candidate keeps
+ * its running max similarity to the selected set, updated only against the item picked in the previous round:
+ * O(k · N · d) instead of recomputing every candidate against every selected item each round.
+ */
+final class MmrSelector {
+
+    private MmrSelector() {
+    }
+
+    /**
+     * @param ranked     candidates sorted by fused score (best first)
+     * @param embeddings chunk id → embedding; candidates without one are not selectable
+     * @return up to {@code k} items, sorted by fused score
+     */
+    static List<ScoredChunk> select(List<ScoredChunk> ranked, Map<UUID, float[]> embeddings, int k, double lambda) {
+        List<ScoredChunk> items = new ArrayList<>(ranked.size());
+        int dims = -1;
+        for (ScoredChunk sc : ranked) {
+            float[] e = embeddings.get(sc.id());
+            if (e == null) {
+                continue;
+            }
+            if (dims < 0) {
+                dims = e.length;
+            }
+            if (e.length == dims) {
+                items.add(sc);
+            }
+        }
+        int n = items.size();
+        if (n == 0) {
+            return List.of();
+        }
+
+        float[] matrix = new float[n * dims];
+        double[] relevance = new double[n];
+        for (int i = 0; i < n; i++) {
+            VectorMath.normalizeInto(embeddings.get(items.get(i).id()), matrix, i * dims);
+            relevance[i] = lambda * items.get(i).fusedScore();
+        }
+
+        double[] maxSim = new double[n]; // similarity to selected set; 0 floor as before (no bonus for dissimilarity)
+        boolean[] taken = new boolean[n];
+        List<ScoredChunk> selected = new ArrayList<>(Math.min(k, n));
+
+        // Start with best fused
+        int last = 0;
+        taken[0] = true;
+        selected.add(items.get(0));
+
+        double diversity = 1.0 - lambda;
+        int limit = Math.min(k, ranked.size());
+        while (selected.size() < limit) {
+            int best = -1;
+            double bestScore = -Double.MAX_VALUE;
+            int lastOffset = last * dims;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double sim = VectorMath.dot(matrix, i * dims, matrix, lastOffset, dims);
+                if (sim > maxSim[i]) {
+                    maxSim[i] = sim;
+                }
+                double mmr = relevance[i] - diversity * maxSim[i];
+                if (mmr > bestScore) {
+                    bestScore = mmr;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            taken[best] = true;
+            selected.add(items.get(best));
+            last = best;
+        }
+
+        // Keep original order preference by fusedScore among selected, stable
+        selected.sort(Comparator.comparingDouble(ScoredChunk::fusedScore).reversed());
+        return selected;
+    }
+}
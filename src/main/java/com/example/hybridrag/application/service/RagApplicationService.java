@@ -1,17 +1,27 @@
 package com.example.hybridrag.application.service;
 
+import com.example.hybridrag.controller.exception.BusinessException;
+import com.example.hybridrag.domain.dto.BatchRetrieveRequest;
+import com.example.hybridrag.domain.dto.BatchRetrieveResponse;
 import com.example.hybridrag.domain.dto.ExamDraftRequest;
 import com.example.hybridrag.domain.dto.ExamDraftResponse;
+import com.example.hybridrag.domain.dto.IngestJobResponse;
+import com.example.hybridrag.infrastructure.ingest.FileRegistry;
+import com.example.hybridrag.infrastructure.ingest.IngestJob;
+import com.example.hybridrag.infrastructure.ingest.IngestJobService;
 import com.example.hybridrag.infrastructure.ingest.IngestService;
 import com.example.hybridrag.infrastructure.llm.DeepSeekClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Service
 public class RagApplicationService {
@@ -19,24 +29,33 @@ public class RagApplicationService {
     private static final Logger log = LoggerFactory.getLogger(RagApplicationService.class);
 
     private final IngestService ingestService;
+    private final IngestJobService ingestJobService;
+    private final FileRegistry fileRegistry;
     private final HybridSearchService hybridSearchService;
     private final DeepSeekClient deepSeekClient;
 
     private final int maxContextChars;
     private final int maxContextChunks;
+    private final int maxBatchQueries;
 
     public RagApplicationService(
             IngestService ingestService,
+            IngestJobService ingestJobService,
+            FileRegistry fileRegistry,
             HybridSearchService hybridSearchService,
             DeepSeekClient deepSeekClient,
             @Value("${hybridrag.rag.context.max-chars}") int maxContextChars,
-            @Value("${hybridrag.rag.context.max-chunks}") int maxContextChunks
+            @Value("${hybridrag.rag.context.max-chunks}") int maxContextChunks,
+            @Value("${hybridrag.rag.retrieve.batch.max-queries}") int maxBatchQueries
     ) {
         this.ingestService = ingestService;
+        this.ingestJobService = ingestJobService;
+        this.fileRegistry = fileRegistry;
         this.hybridSearchService = hybridSearchService;
         this.deepSeekClient = deepSeekClient;
         this.maxContextChars = Math.max(500, maxContextChars);
         this.maxContextChunks = Math.max(1, maxContextChunks);
+        this.maxBatchQueries = Math.max(1, maxBatchQueries);
     }
 
     private static String buildContext(List<ScoredChunk> chunks, int maxChunks, int maxChars) {
@@ -73,18 +92,119 @@ public class RagApplicationService {
         return String.join("\n\n", parts);
     }
 
+    /**
+     * Ingest only (asynchronous job): returns a stable fileId that later {@link #generate(ExamDraftRequest)}
+     * calls can reuse once the job is DONE.
+     */
+    public IngestJobService.Submission ingestFile(MultipartFile file) {
+        return ingestJobService.submit(file);
+    }
+
+    public IngestJobResponse getIngestJob(UUID jobId) {
+        IngestJob job = ingestJobService.find(jobId)
+                .orElseThrow(() -> new BusinessException("Ingest job not found: " + jobId, HttpStatus.NOT_FOUND));
+        return IngestJobResponse.builder()
+                .jobId(job.jobId())
+                .fileId(job.fileId())
+                .fileName(job.fileName())
+                .status(job.status().name())
+                .stage(job.stage() == null ? null : job.stage().name())
+                .pagesExtracted(job.pagesExtracted())
+                .chunksTotal(job.chunksTotal())
+                .chunksEmbedded(job.chunksEmbedded())
+                .chunksIndexed(job.chunksIndexed())
+                .error(job.error())
+                .createdAt(job.createdAt())
+                .updatedAt(job.updatedAt())
+                .build();
+    }
+
     /**
      * Pipeline:
-     * Ingest -> Hybrid Search -> Build context -> DeepSeek(generateExamDraft) -> ExamDraftResponse
+     * Ingest (or reuse by content hash) -> Hybrid Search -> Build context -> DeepSeek(generateExamDraft) -> ExamDraftResponse
      */
     public ExamDraftResponse ask(ExamDraftRequest request, MultipartFile file) {
         long t0 = System.nanoTime();
-
         IngestService.IngestResult ingest = ingestService.ingest(request, file);
-        String fileId = ingest.fileId();
+        List<ScoredChunk> retrieved = hybridSearchService.hybridSearch(ingest.fileId(), request.getTopic());
+        return generate(request, ingest.fileId(), ingest.chunks(), retrieved, t0);
+    }
+
+    /**
+     * Pipeline over already-ingested file(s) (request.fileIds, or request.fileId):
+     * Hybrid Search -> Build context -> DeepSeek(generateExamDraft) -> ExamDraftResponse
+     */
+    public ExamDraftResponse generate(ExamDraftRequest request) {
+        long t0 = System.nanoTime();
+        if (request.getFileIds() != null && !request.getFileIds().isEmpty()) {
+            List<String> fileIds = new ArrayList<>(request.getFileIds().size());
+            int chunks = 0;
+            for (String fileId : request.getFileIds()) {
+                FileRegistry.RegisteredFile file = requireIngested(fileId);
+                fileIds.add(file.fileId());
+                chunks += file.chunks();
+            }
+            List<ScoredChunk> retrieved = hybridSearchService.hybridSearchFiles(fileIds, request.getTopic());
+            return generate(request, String.join(",", fileIds), chunks, retrieved, t0);
+        }
+        FileRegistry.RegisteredFile file = requireIngested(request.getFileId());
+        List<ScoredChunk> retrieved = hybridSearchService.hybridSearch(file.fileId(), request.getTopic());
+        return generate(request, file.fileId(), file.chunks(), retrieved, t0);
+    }
+
+    /**
+     * Retrieval only, several queries over one already-ingested file (e.g. one per exam sub-topic), at most
+     * {@code batch.max-queries} per request: the whole batch is one {@code _msearch} and one pgvector statement.
+     */
+    public BatchRetrieveResponse retrieveBatch(BatchRetrieveRequest request) {
+        List<String> queries = request.getQueries();
+        if (queries.size() > maxBatchQueries) {
+            throw new IllegalArgumentException("At most " + maxBatchQueries + " queries per batch, got " + queries.size());
+        }
+        FileRegistry.RegisteredFile file = requireIngested(request.getFileId());
+        List<List<ScoredChunk>> results = hybridSearchService.hybridSearchBatch(file.fileId(), queries);
+
+        List<BatchRetrieveResponse.QueryResult> out = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            List<BatchRetrieveResponse.RetrievedChunk> chunks = new ArrayList<>(results.get(i).size());
+            for (ScoredChunk sc : results.get(i)) {
+                chunks.add(BatchRetrieveResponse.RetrievedChunk.builder()
+                        .id(sc.id())
+                        .content(sc.content())
+                        .metadata(sc.metadata())
+                        .vectorScore(sc.vectorScore())
+                        .bm25Score(sc.bm25Score())
+                        .fusedScore(sc.fusedScore())
+                        .build());
+            }
+            out.add(BatchRetrieveResponse.QueryResult.builder()
+                    .query(queries.get(i))
+                    .chunks(chunks)
+                    .build());
+        }
+        return BatchRetrieveResponse.builder()
+                .fileId(file.fileId())
+                .results(out)
+                .build();
+    }
+
+    private FileRegistry.RegisteredFile requireIngested(String fileId) {
+        if (!StringUtils.hasText(fileId)) {
+            throw new IllegalArgumentException("fileId is required");
+        }
+        FileRegistry.RegisteredFile file = fileRegistry.findByFileId(fileId).orElse(null);
+        if (file == null) {
+            if (ingestJobService.findActiveByFileId(fileId).isPresent()) {
+                throw new BusinessException("File is still being ingested: " + fileId, HttpStatus.CONFLICT);
+            }
+            throw new BusinessException("File not found: " + fileId, HttpStatus.NOT_FOUND);
+        }
+        return file;
+    }
 
-        // Query = topic (per current contract)
-        List<ScoredChunk> retrieved = hybridSearchService.hybridSearch(fileId, request.getTopic());
+    // Query = topic (per current contract)
+    private ExamDraftResponse generate(ExamDraftRequest request, String fileId, int chunks,
+                                       List<ScoredChunk> retrieved, long t0) {
         String context = buildContext(retrieved, maxContextChunks, maxContextChars);
 
         ExamDraftResponse response = deepSeekClient.generateExamDraft(request, context);
@@ -93,7 +213,7 @@ public class RagApplicationService {
         int qCount = (response == null || response.getQuestions() == null) ? 0 : response.getQuestions().size();
         log.info("event=rag_ask_done fileId={} chunks_ingested={} retrieved={} context_chars={} questions={} ms={}",
                 fileId,
-                ingest.chunks(),
+                chunks,
                 retrieved.size(),
                 context.length(),
                 qCount,
@@ -101,4 +221,4 @@ public class RagApplicationService {
 
         return response;
     }
-}
\ No newline at end of file
+}
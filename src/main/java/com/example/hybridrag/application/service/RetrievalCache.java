@@ -0,0 +1,166 @@
+package com.example.hybridrag.application.service;
+
+import com.example.hybridrag.infrastructure.embedding.CacheKeys;
+import com.example.hybridrag.infrastructure.ingest.FileChunksChangedEvent;
+import com.example.hybridrag.infrastructure.ingest.FileGenerations;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of final hybrid retrieval results, keyed by fileId, normalized query and the retrieval parameters.
+ * <p>
+ * LRU bounded by entry count and by weight (total characters of cached chunk content). Entries of a file are
+ * dropped on {@link FileChunksChangedEvent}; a per-file generation stops a retrieval that started before the
+ * change from caching its (stale) result afterwards.
+ */
+@Component
+public class RetrievalCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RetrievalCache.class);
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Cached> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final FileGenerations generations = new FileGenerations();
+    private long weight;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    public RetrievalCache(
+            MeterRegistry meterRegistry,
+            @Value("${hybridrag.rag.retrieve.cache.enabled}") boolean enabled,
+            @Value("${hybridrag.rag.retrieve.cache.max-entries}") int maxEntries,
+            @Value("${hybridrag.rag.retrieve.cache.max-weight-chars}") long maxWeight
+    ) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxWeight = Math.max(1, maxWeight);
+
+        this.hits = Counter.builder("hybridrag.retrieval.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hybridrag.retrieval.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("hybridrag.retrieval.cache.evictions").register(meterRegistry);
+        this.invalidations = Counter.builder("hybridrag.retrieval.cache.invalidations").register(meterRegistry);
+        meterRegistry.gauge("hybridrag.retrieval.cache.size", this, c -> c.size());
+        meterRegistry.gauge("hybridrag.retrieval.cache.weight", this, c -> c.weight());
+
+        log.info("event=retrieval_cache_config enabled={} maxEntries={} maxWeightChars={}", enabled, this.maxEntries, this.maxWeight);
+    }
+
+    /**
+     * Everything that changes the result of a retrieval for a given file and query.
+     */
+    public record Params(int topK, double alpha, int mmrK, double mmrLambda, int candidateFactor, int candidateMin) {
+    }
+
+    public record Key(String fileId, String query, Params params) {
+    }
+
+    /**
+     * Snapshot of the file's generation; pass back to {@link #put} so results computed across an invalidation are
+     * not cached.
+     */
+    public record Lookup(Key key, long generation, List<ScoredChunk> result) {
+    }
+
+    private record Cached(List<ScoredChunk> chunks, long weight) {
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public Lookup get(String fileId, String query, Params params) {
+        Key key = new Key(fileId, CacheKeys.normalizeText(query), params);
+        long generation = generations.current(fileId);
+        Cached cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached == null) {
+            misses.increment();
+            return new Lookup(key, generation, null);
+        }
+        hits.increment();
+        return new Lookup(key, generation, cached.chunks());
+    }
+
+    public void put(Lookup lookup, List<ScoredChunk> result) {
+        List<ScoredChunk> chunks = List.copyOf(result);
+        long w = weigh(chunks);
+        if (w > maxWeight) {
+            return;
+        }
+        String fileId = lookup.key().fileId();
+        synchronized (entries) {
+            if (generations.current(fileId) != lookup.generation()) {
+                return;
+            }
+            Cached previous = entries.put(lookup.key(), new Cached(chunks, w));
+            if (previous != null) {
+                weight -= previous.weight();
+            }
+            weight += w;
+            Iterator<Cached> eldest = entries.values().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+                weight -= eldest.next().weight();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    @EventListener
+    public void onFileChunksChanged(FileChunksChangedEvent event) {
+        String fileId = event.fileId();
+        int removed = 0;
+        synchronized (entries) {
+            generations.advance(event);
+            Iterator<Map.Entry<Key, Cached>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Cached> e = it.next();
+                if (e.getKey().fileId().equals(fileId)) {
+                    weight -= e.getValue().weight();
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        invalidations.increment();
+        if (removed > 0) {
+            log.info("event=retrieval_cache_invalidated fileId={} removed={}", fileId, removed);
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private long weight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    private static long weigh(List<ScoredChunk> chunks) {
+        long w = 0;
+        for (ScoredChunk sc : chunks) {
+            w += sc.content() == null ? 0 : sc.content().length();
+        }
+        return Math.max(1, w);
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.hybridrag.application.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One retrieval leg of the hybrid fan-out (vector or BM25) with its own deadline.
+ * <p>
+ * A leg that misses its deadline or fails is reported as degraded instead of failing the request, so fusion can
+ * continue with the other leg. With hedging on, a second identical call is started once the first has been running
+ * longer than this leg's recent p95; whichever answers first wins.
+ * <p>
+ * Calls run as cancellable tasks on the shared executor. Once the leg is settled (first answer, last failure, or
+ * {@link #await} giving up at the deadline) the other calls are cancelled: queued ones never start and running ones
+ * are interrupted, so a dropped leg or a losing hedge does not keep holding a thread (and its connection) ahead of
+ * fresh legs. Hedges in flight across all legs are capped by a shared semaphore; past the cap a slow leg just waits.
+ */
+final class SearchLeg {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchLeg.class);
+
+    private static final int WINDOW = 256;
+    private static final int MIN_SAMPLES = 32;
+
+    private final String name;
+    private final Executor executor;
+    private final long deadlineNanos;
+    private final boolean hedge;
+    private final long hedgeMinDelayNanos;
+    private final Semaphore hedgeSlots;
+
+    private final long[] samples = new long[WINDOW];
+    private int sampleCount;
+    private int sampleNext;
+
+    private final Timer latency;
+    private final Counter timeouts;
+    private final Counter errors;
+    private final Counter hedges;
+    private final Counter hedgesSkipped;
+    private final Counter cancelled;
+
+    SearchLeg(String name, Executor executor, MeterRegistry meterRegistry, long deadlineMs, boolean hedge,
+              long hedgeMinDelayMs, Semaphore hedgeSlots) {
+        this.name = name;
+        this.executor = executor;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlineMs));
+        this.hedge = hedge;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, hedgeMinDelayMs));
+        this.hedgeSlots = hedgeSlots;
+
+        this.latency = Timer.builder("hybridrag.retrieval.leg.latency").tag("leg", name).register(meterRegistry);
+        this.timeouts = Counter.builder("hybridrag.retrieval.leg.degraded").tag("leg", name).tag("reason", "timeout").register(meterRegistry);
+        this.errors = Counter.builder("hybridrag.retrieval.leg.degraded").tag("leg", name).tag("reason", "error").register(meterRegistry);
+        this.hedges = Counter.builder("hybridrag.retrieval.leg.hedged").tag("leg", name).register(meterRegistry);
+        this.hedgesSkipped = Counter.builder("hybridrag.retrieval.leg.hedge.skipped").tag("leg", name).register(meterRegistry);
+        this.cancelled = Counter.builder("hybridrag.retrieval.leg.cancelled").tag("leg", name).register(meterRegistry);
+    }
+
+    /**
+     * @param value    the leg's result, or null when degraded
+     * @param degraded null, "timeout" or "error"
+     */
+    record Outcome<T>(T value, String degraded) {
+        boolean ok() {
+            return degraded == null;
+        }
+    }
+
+    /**
+     * Starts the call (and possibly a hedge of it). Cancelling the returned future cancels every call still
+     * queued or running.
+     */
+    <T> CompletableFuture<T> start(Supplier<T> call) {
+        Race<T> race = new Race<>(call);
+        race.launch(false);
+
+        long p95 = hedge ? p95Nanos() : -1;
+        if (p95 >= 0) {
+            long delay = Math.max(p95, hedgeMinDelayNanos);
+            if (delay < deadlineNanos) {
+                // The check itself runs on the common pool: queued behind busy legs it would fire late.
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                    if (race.result.isDone()) {
+                        return;
+                    }
+                    if (!hedgeSlots.tryAcquire()) {
+                        hedgesSkipped.increment();
+                        return;
+                    }
+                    hedges.increment();
+                    log.info("event=retrieval_leg_hedged leg={} after_ms={}", name, delay / 1_000_000);
+                    race.launch(true);
+                });
+            }
+        }
+        return race.result;
+    }
+
+    /**
+     * Waits until this leg's deadline (measured from {@code startNanos}, the fan-out start).
+     */
+    <T> Outcome<T> await(CompletableFuture<T> f, long startNanos, String fileId) {
+        long remaining = deadlineNanos - (System.nanoTime() - startNanos);
+        try {
+            return new Outcome<>(f.get(Math.max(0, remaining), TimeUnit.NANOSECONDS), null);
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            timeouts.increment();
+            log.warn("event=retrieval_leg_degraded leg={} fileId={} reason=timeout deadline_ms={}",
+                    name, fileId, deadlineNanos / 1_000_000);
+            return new Outcome<>(null, "timeout");
+        } catch (ExecutionException e) {
+            errors.increment();
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            log.warn("event=retrieval_leg_degraded leg={} fileId={} reason=error msg={}", name, fileId, cause.getMessage());
+            return new Outcome<>(null, "error");
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            return new Outcome<>(null, "timeout");
+        }
+    }
+
+    /**
+     * The calls of one {@link #start}: the first success completes {@link #result}, the last failure fails it, and
+     * whatever settles it cancels the calls still pending.
+     */
+    private final class Race<T> {
+
+        private final Supplier<T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<FutureTask<T>> attempts = new ArrayList<>(2);
+        private int pending;
+
+        Race(Supplier<T> call) {
+            this.call = call;
+            result.whenComplete((v, e) -> cancelAll());
+        }
+
+        void launch(boolean hedged) {
+            FutureTask<T> task = new FutureTask<>(() -> {
+                long t0 = System.nanoTime();
+                T value = call.get();
+                record(System.nanoTime() - t0);
+                return value;
+            }) {
+                @Override
+                public void run() {
+                    try {
+                        super.run();
+                    } finally {
+                        // Also reached when a cancelled hedge is dequeued, so the slot covers queue time too.
+                        if (hedged) {
+                            hedgeSlots.release();
+                        }
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    settle(this);
+                }
+            };
+            synchronized (this) {
+                if (result.isDone()) {
+                    if (hedged) {
+                        hedgeSlots.release();
+                    }
+                    return;
+                }
+                attempts.add(task);
+                pending++;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (hedged) {
+                    hedgeSlots.release();
+                }
+                synchronized (this) {
+                    attempts.remove(task);
+                }
+                failed(e);
+            }
+        }
+
+        private void settle(FutureTask<T> task) {
+            if (task.isCancelled()) {
+                failed(new CancellationException("cancelled"));
+                return;
+            }
+            try {
+                result.complete(task.get());
+            } catch (ExecutionException e) {
+                failed(e.getCause() == null ? e : e.getCause());
+            } catch (InterruptedException e) {
+                // done() only runs once the task has finished, so get() does not block
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void failed(Throwable e) {
+            synchronized (this) {
+                if (--pending > 0) {
+                    return;
+                }
+            }
+            result.completeExceptionally(e);
+        }
+
+        private void cancelAll() {
+            List<FutureTask<T>> snapshot;
+            synchronized (this) {
+                snapshot = List.copyOf(attempts);
+            }
+            for (FutureTask<T> task : snapshot) {
+                if (task.cancel(true)) {
+                    cancelled.increment();
+                }
+            }
+        }
+    }
+
+    private void record(long nanos) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+        synchronized (samples) {
+            samples[sampleNext] = nanos;
+            sampleNext = (sampleNext + 1) % WINDOW;
+            sampleCount = Math.min(WINDOW, sampleCount + 1);
+        }
+    }
+
+    /**
+     * p95 over the last {@value #WINDOW} successful calls, or -1 until there are enough samples.
+     */
+    private long p95Nanos() {
+        long[] copy;
+        synchronized (samples) {
+            if (sampleCount < MIN_SAMPLES) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(copy);
+        return copy[(int) Math.ceil(copy.length * 0.95) - 1];
+    }
+}
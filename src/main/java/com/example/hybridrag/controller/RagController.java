@@ -1,13 +1,20 @@
 package com.example.hybridrag.controller;
 
 import com.example.hybridrag.application.service.RagApplicationService;
+import com.example.hybridrag.controller.exception.BusinessException;
+import com.example.hybridrag.domain.dto.BatchRetrieveRequest;
+import com.example.hybridrag.domain.dto.BatchRetrieveResponse;
 import com.example.hybridrag.domain.dto.ExamDraftRequest;
 import com.example.hybridrag.domain.dto.ExamDraftResponse;
+import com.example.hybridrag.domain.dto.FileIngestResponse;
+import com.example.hybridrag.domain.dto.IngestJobResponse;
 import com.example.hybridrag.domain.dto.ResponseData;
+import com.example.hybridrag.infrastructure.ingest.IngestJobService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.Map;
+import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -15,7 +22,10 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
@@ -45,12 +55,7 @@ public class RagController {
         if (!StringUtils.hasText(topic)) {
             throw new IllegalArgumentException("topic is required");
         }
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("file is required");
-        }
-        if (file.getOriginalFilename() != null && !file.getOriginalFilename().toLowerCase().endsWith(".pdf")) {
-            throw new IllegalArgumentException("Only PDF uploads are supported");
-        }
+        validatePdf(file);
 
         ObjectMapper objectMapper = new ObjectMapper();
         ExamDraftRequest request = objectMapper.readValue(topic, ExamDraftRequest.class);
@@ -64,6 +69,103 @@ public class RagController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Ingest a PDF once, asynchronously: 202 with a jobId to poll via GET /jobs/{jobId}.
+     * Identical content maps to the already-indexed fileId (200, no job).
+     */
+    @PostMapping(
+            path = "/files",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<ResponseData<FileIngestResponse>> ingestFile(
+            @RequestPart("file") MultipartFile file
+    ) {
+        validatePdf(file);
+
+        IngestJobService.Submission submission = ragApplicationService.ingestFile(file);
+        HttpStatus status = submission.reused() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+
+        ResponseData<FileIngestResponse> response = ResponseData.<FileIngestResponse>builder()
+                .status(status.value())
+                .message(submission.reused() ? "File already ingested" : "Ingest job accepted")
+                .data(FileIngestResponse.builder()
+                        .jobId(submission.jobId())
+                        .status(submission.status().name())
+                        .fileId(submission.fileId())
+                        .chunks(submission.chunks())
+                        .reused(submission.reused())
+                        .build())
+                .build();
+
+        return ResponseEntity.status(status).body(response);
+    }
+
+    @GetMapping(path = "/jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseData<IngestJobResponse>> getIngestJob(@PathVariable("jobId") UUID jobId) {
+        ResponseData<IngestJobResponse> response = ResponseData.<IngestJobResponse>builder()
+                .status(HttpStatus.OK.value())
+                .message("Get ingest job successfully")
+                .data(ragApplicationService.getIngestJob(jobId))
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Generate an exam draft from an already-ingested file (request.fileId).
+     */
+    @PostMapping(
+            path = "/generate",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<ResponseData<ExamDraftResponse>> generate(@RequestBody ExamDraftRequest request) {
+        if (!StringUtils.hasText(request.getTopic())) {
+            throw new IllegalArgumentException("topic is required");
+        }
+
+        ResponseData<ExamDraftResponse> response = ResponseData.<ExamDraftResponse>builder()
+                .status(HttpStatus.CREATED.value())
+                .message("Generate exam draft successfully")
+                .data(ragApplicationService.generate(request))
+                .build();
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Retrieval only: ranked chunks for each of several queries over one already-ingested file.
+     */
+    @PostMapping(
+            path = "/retrieve/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<ResponseData<BatchRetrieveResponse>> retrieveBatch(@RequestBody BatchRetrieveRequest request) {
+        if (request.getQueries() == null || request.getQueries().isEmpty()
+                || request.getQueries().stream().anyMatch(q -> !StringUtils.hasText(q))) {
+            throw new IllegalArgumentException("queries must be a non-empty list of non-blank strings");
+        }
+
+        ResponseData<BatchRetrieveResponse> response = ResponseData.<BatchRetrieveResponse>builder()
+                .status(HttpStatus.OK.value())
+                .message("Retrieve successfully")
+                .data(ragApplicationService.retrieveBatch(request))
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    private static void validatePdf(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("file is required");
+        }
+        if (file.getOriginalFilename() != null && !file.getOriginalFilename().toLowerCase().endsWith(".pdf")) {
+            throw new IllegalArgumentException("Only PDF uploads are supported");
+        }
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handle(HttpServletRequest req, Exception ex) {
         String path = req.getRequestURI();
@@ -72,6 +174,8 @@ public class RagController {
         int status = 500;
         if (ex instanceof IllegalArgumentException) {
             status = 400;
+        } else if (ex instanceof BusinessException be) {
+            status = be.getStatus().value();
         }
 
         return ResponseEntity.status(status).body(Map.of(
@@ -0,0 +1,18 @@
+package com.example.hybridrag.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchRetrieveRequest {
+
+    private String fileId;
+    private List<String> queries;
+}
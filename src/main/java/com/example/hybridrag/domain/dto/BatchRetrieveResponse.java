@@ -0,0 +1,33 @@
+package com.example.hybridrag.domain.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class BatchRetrieveResponse {
+    private String fileId;
+    private List<QueryResult> results;
+
+    @Getter
+    @Builder
+    public static class QueryResult {
+        private String query;
+        private List<RetrievedChunk> chunks;
+    }
+
+    @Getter
+    @Builder
+    public static class RetrievedChunk {
+        private UUID id;
+        private String content;
+        private Map<String, Object> metadata;
+        private double vectorScore;
+        private double bm25Score;
+        private double fusedScore;
+    }
+}
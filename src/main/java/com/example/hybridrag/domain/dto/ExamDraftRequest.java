@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -14,6 +15,8 @@ import java.util.Map;
 public class ExamDraftRequest {
 
     private String fileId;
+    /** Several already-ingested files searched together; takes precedence over fileId when non-empty. */
+    private List<String> fileIds;
     private String fileName;
 
     private String pdfText;
@@ -0,0 +1,16 @@
+package com.example.hybridrag.domain.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@Builder
+public class FileIngestResponse {
+    private UUID jobId;
+    private String status;
+    private String fileId;
+    private int chunks;
+    private boolean reused;
+}
@@ -0,0 +1,29 @@
+package com.example.hybridrag.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class IngestJobResponse {
+    private UUID jobId;
+    private String fileId;
+    private String fileName;
+    private String status;
+    private String stage;
+
+    private int pagesExtracted;
+    private int chunksTotal;
+    private int chunksEmbedded;
+    private int chunksIndexed;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+}
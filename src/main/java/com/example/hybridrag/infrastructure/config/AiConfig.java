@@ -1,9 +1,15 @@
 package com.example.hybridrag.infrastructure.config;
 
+import com.example.hybridrag.infrastructure.embedding.CachingEmbeddingModel;
+import com.example.hybridrag.infrastructure.embedding.EmbeddingCache;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 public class AiConfig {
@@ -12,4 +18,18 @@ public class AiConfig {
     public ChatClient chatClient(ChatModel chatModel) {
         return ChatClient.builder(chatModel).build();
     }
+
+    /**
+     * Primary EmbeddingModel: the Ollama model behind the persistent embedding cache.
+     * Used by the ingest embedding pipeline; query embeddings go through QueryEmbeddingCache straight to Ollama.
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel cachingEmbeddingModel(
+            OllamaEmbeddingModel ollamaEmbeddingModel,
+            EmbeddingCache embeddingCache,
+            @Value("${hybridrag.pgvector.dimensions}") int dimensions
+    ) {
+        return new CachingEmbeddingModel(ollamaEmbeddingModel, embeddingCache, dimensions);
+    }
 }
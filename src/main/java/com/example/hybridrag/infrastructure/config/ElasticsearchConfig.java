@@ -5,8 +5,12 @@ import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
@@ -48,6 +52,17 @@ public class ElasticsearchConfig {
         return new ElasticsearchClient(transport);
     }
 
+    /**
+     * dual (pgvector + Elasticsearch BM25), postgres (vector + full-text in Postgres, no Elasticsearch traffic) or
+     * elasticsearch (kNN + BM25 in one Elasticsearch request).
+     */
+    @Bean
+    public RetrievalBackend retrievalBackend(@Value("${hybridrag.rag.retrieve.backend}") String backend) {
+        RetrievalBackend parsed = RetrievalBackend.parse(backend);
+        log.info("event=retrieval_backend_config backend={}", parsed);
+        return parsed;
+    }
+
     /**
      * Dedicated executor for parallel hybrid retrieval (vector + BM25).
      * Bounded fixed pool improves tail latency predictability under load.
@@ -58,4 +73,33 @@ public class ElasticsearchConfig {
         log.info("event=hybrid_executor_config threads={}", threads);
         return Executors.newFixedThreadPool(threads);
     }
-}
\ No newline at end of file
+
+    /**
+     * Per-file searches of multi-file retrieval, kept off {@link #hybridSearchExecutor} so a wide fan-out cannot
+     * queue the single-file legs past their deadlines. A full queue rejects; the file then counts as failed.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor multiFileSearchExecutor(
+            @Value("${hybridrag.rag.retrieve.multi.threads}") int threads,
+            @Value("${hybridrag.rag.retrieve.multi.queue-capacity}") int queueCapacity
+    ) {
+        int size = Math.max(1, threads);
+        int capacity = Math.max(1, queueCapacity);
+        log.info("event=multi_file_executor_config threads={} queueCapacity={}", size, capacity);
+
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                size,
+                size,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                r -> {
+                    Thread t = new Thread(r, "multi-file-search-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.hybridrag.infrastructure.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IngestConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestConfig.class);
+
+    /**
+     * Bounded worker pool for asynchronous ingest jobs.
+     * A full queue rejects new jobs instead of piling uploads on disk / holding request threads.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor ingestExecutor(
+            @Value("${hybridrag.ingest.workers}") int workers,
+            @Value("${hybridrag.ingest.queue-capacity}") int queueCapacity
+    ) {
+        int threads = Math.max(1, workers);
+        int capacity = Math.max(1, queueCapacity);
+        log.info("event=ingest_executor_config workers={} queueCapacity={}", threads, capacity);
+
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                r -> {
+                    Thread t = new Thread(r, "ingest-worker-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Shared pool for page-parallel PDF text extraction (CPU bound, sized to the cores).
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pdfExtractExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        log.info("event=pdf_extract_executor_config threads={}", threads);
+
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pdf-extract-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Shared pool for the ingest embedding stage: blocking embedding calls and the chained pgvector writes.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService embeddingExecutor(@Value("${hybridrag.ingest.embedding.threads}") int threads) {
+        int size = Math.max(2, threads);
+        log.info("event=embedding_executor_config threads={}", size);
+
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "embed-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Feeds text-only documents into Elasticsearch bulk sessions next to the embedding pipeline. Kept apart from
+     * {@link #embeddingExecutor}: a feed blocked on bulk back-pressure must not hold a thread the pipelines need.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService esBulkFeedExecutor(@Value("${hybridrag.ingest.elasticsearch.feed-threads}") int threads) {
+        int size = Math.max(1, threads);
+        log.info("event=es_bulk_feed_executor_config threads={}", size);
+
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "es-bulk-feed-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
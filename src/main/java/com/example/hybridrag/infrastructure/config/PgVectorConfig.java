@@ -1,5 +1,6 @@
 package com.example.hybridrag.infrastructure.config;
 
+import com.example.hybridrag.infrastructure.vector.VectorStorageMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingModel;
@@ -37,4 +38,15 @@ public class PgVectorConfig {
                 .distanceType(PgVectorStore.PgDistanceType.COSINE_DISTANCE)
                 .build();
     }
+
+    /**
+     * Index storage for vector search: vector (float4), halfvec (float2) or binary (1 bit/dim + exact re-score).
+     * Built online by PgVectorIndexMigrator.
+     */
+    @Bean
+    public VectorStorageMode vectorStorageMode(@Value("${hybridrag.pgvector.storage.mode}") String mode) {
+        VectorStorageMode parsed = VectorStorageMode.parse(mode);
+        log.info("event=pgvector_storage_config mode={}", parsed);
+        return parsed;
+    }
 }
\ No newline at end of file
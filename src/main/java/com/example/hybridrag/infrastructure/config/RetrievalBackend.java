@@ -0,0 +1,34 @@
+package com.example.hybridrag.infrastructure.config;
+
+/**
+ * Where hybrid retrieval runs (hybridrag.rag.retrieve.backend).
+ * <ul>
+ *   <li>{@code dual}: pgvector for the vector leg, Elasticsearch BM25 for the lexical leg, fused in the JVM</li>
+ *   <li>{@code postgres}: vector and full-text ({@code content_tsv}) candidates from one Postgres statement;
+ *   Elasticsearch is neither written nor queried</li>
+ *   <li>{@code elasticsearch}: kNN and BM25 from Elasticsearch, whose documents carry the embedding as well;
+ *   pgvector stays the system of record. Documents indexed earlier without an embedding get it from pgvector via
+ *   the background backfill ({@code EsVectorBackfill}), and until a file is backfilled it is served the dual
+ *   way</li>
+ * </ul>
+ */
+public enum RetrievalBackend {
+    DUAL,
+    POSTGRES,
+    ELASTICSEARCH;
+
+    public static RetrievalBackend parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+
+    public boolean usesElasticsearch() {
+        return this != POSTGRES;
+    }
+
+    /**
+     * Whether Elasticsearch documents carry the chunk embedding.
+     */
+    public boolean indexesVectors() {
+        return this == ELASTICSEARCH;
+    }
+}
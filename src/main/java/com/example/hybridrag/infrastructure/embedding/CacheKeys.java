@@ -0,0 +1,27 @@
+package com.example.hybridrag.infrastructure.embedding;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Text canonicalization shared by every cache keyed on query or chunk text (embeddings, query embeddings,
+ * retrieval results), so they agree on when two strings are "the same".
+ */
+public final class CacheKeys {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private CacheKeys() {
+    }
+
+    /**
+     * NFC-normalized, whitespace runs collapsed to one space, trimmed; {@code null} becomes "".
+     */
+    public static String normalizeText(String text) {
+        if (text == null) {
+            return "";
+        }
+        String nfc = Normalizer.normalize(text, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(nfc).replaceAll(" ").trim();
+    }
+}
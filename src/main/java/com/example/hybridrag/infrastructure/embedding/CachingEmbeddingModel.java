@@ -0,0 +1,80 @@
+package com.example.hybridrag.infrastructure.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * {@link EmbeddingModel} decorator backed by {@link EmbeddingCache}.
+ * <p>
+ * All EmbeddingModel entry points (embed(String), embed(List), PgVectorStore's batched embed) funnel into
+ * {@link #call(EmbeddingRequest)}, which only forwards the cache misses, as one request, to the delegate.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache cache;
+    private final int dimensions;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache cache, int dimensions) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        if (!cache.enabled()) {
+            return delegate.call(request);
+        }
+        List<String> texts = request.getInstructions();
+        String model = request.getOptions() == null ? null : request.getOptions().getModel();
+
+        float[][] out = new float[texts.size()][];
+        EmbeddingCache.Key[] keys = new EmbeddingCache.Key[texts.size()];
+        List<Integer> missIdx = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cache.key(model, texts.get(i));
+            out[i] = cache.get(keys[i]);
+            if (out[i] == null) {
+                missIdx.add(i);
+                missTexts.add(texts.get(i));
+            }
+        }
+
+        if (!missTexts.isEmpty()) {
+            EmbeddingResponse resp = delegate.call(new EmbeddingRequest(missTexts, request.getOptions()));
+            List<Embedding> results = resp.getResults();
+            if (results.size() != missTexts.size()) {
+                throw new IllegalStateException("Embedding count mismatch: expected " + missTexts.size() + " got " + results.size());
+            }
+            for (int j = 0; j < results.size(); j++) {
+                int i = missIdx.get(j);
+                out[i] = results.get(j).getOutput();
+                cache.put(keys[i], out[i]);
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(out.length);
+        for (int i = 0; i < out.length; i++) {
+            embeddings.add(new Embedding(out[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+}
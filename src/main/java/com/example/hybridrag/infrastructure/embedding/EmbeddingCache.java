@@ -0,0 +1,171 @@
+package com.example.hybridrag.infrastructure.embedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed embedding cache: key = SHA-256(model, dimensions, normalized text).
+ * <p>
+ * Two tiers: an in-memory LRU in front of a memory-mapped file that survives restarts. Because the model name
+ * and dimensions are part of both the key and the disk file's fingerprint, changing OLLAMA_EMBEDDING_MODEL
+ * (or the dimensions) never serves stale vectors and resets the disk tier on startup.
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private final boolean enabled;
+    private final String defaultModel;
+    private final int dimensions;
+    private final Map<Key, float[]> memory;
+    private final MappedEmbeddingStore disk;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public EmbeddingCache(
+            MeterRegistry meterRegistry,
+            @Value("${hybridrag.embedding-cache.enabled}") boolean enabled,
+            @Value("${spring.ai.ollama.embedding.options.model:${spring.ai.ollama.embedding.model:}}") String model,
+            @Value("${hybridrag.pgvector.dimensions}") int dimensions,
+            @Value("${hybridrag.embedding-cache.memory-entries}") int memoryEntries,
+            @Value("${hybridrag.embedding-cache.disk-path}") String diskPath,
+            @Value("${hybridrag.embedding-cache.disk-entries}") int diskEntries
+    ) {
+        this.enabled = enabled;
+        this.defaultModel = model;
+        this.dimensions = dimensions;
+
+        int maxEntries = Math.max(1, memoryEntries);
+        this.memory = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        MappedEmbeddingStore store = null;
+        if (enabled && diskEntries > 0) {
+            Path file = Path.of(diskPath, "embeddings-" + dimensions + ".bin");
+            try {
+                store = new MappedEmbeddingStore(file, dimensions, diskEntries, sha256(model + "|" + dimensions));
+            } catch (IOException e) {
+                // Degrade to memory-only rather than failing startup.
+                log.warn("event=embedding_cache_disk_unavailable path={} msg={}", file, e.getMessage());
+            }
+        }
+        this.disk = store;
+
+        this.memoryHits = Counter.builder("hybridrag.embedding.cache.requests").tag("result", "hit_memory").register(meterRegistry);
+        this.diskHits = Counter.builder("hybridrag.embedding.cache.requests").tag("result", "hit_disk").register(meterRegistry);
+        this.misses = Counter.builder("hybridrag.embedding.cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("hybridrag.embedding.cache.memory.size", this, c -> c.memorySize());
+
+        log.info("event=embedding_cache_config enabled={} model={} dimensions={} memoryEntries={} diskEntries={} diskPath={}",
+                enabled, model, dimensions, maxEntries, disk == null ? 0 : disk.capacity(), diskPath);
+    }
+
+    /**
+     * Opaque cache key; build once per text and reuse for {@link #get} / {@link #put}.
+     */
+    public record Key(String hex, byte[] bytes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && hex.equals(k.hex);
+        }
+
+        @Override
+        public int hashCode() {
+            return hex.hashCode();
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public Key key(String model, String text) {
+        String m = model == null || model.isBlank() ? defaultModel : model;
+        byte[] digest = sha256(m + "|" + dimensions + "|" + CacheKeys.normalizeText(text));
+        return new Key(HexFormat.of().formatHex(digest), digest);
+    }
+
+    public float[] get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        float[] v;
+        synchronized (memory) {
+            v = memory.get(key);
+        }
+        if (v != null) {
+            memoryHits.increment();
+            return v;
+        }
+        if (disk != null) {
+            v = disk.get(key.bytes());
+            if (v != null) {
+                diskHits.increment();
+                synchronized (memory) {
+                    memory.put(key, v);
+                }
+                return v;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(Key key, float[] embedding) {
+        if (!enabled || embedding == null) {
+            return;
+        }
+        synchronized (memory) {
+            memory.put(key, embedding);
+        }
+        if (disk != null) {
+            disk.put(key.bytes(), embedding);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (disk == null) {
+            return;
+        }
+        try {
+            disk.close();
+        } catch (IOException e) {
+            log.warn("event=embedding_cache_close_failed msg={}", e.getMessage());
+        }
+    }
+
+    private int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private static byte[] sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
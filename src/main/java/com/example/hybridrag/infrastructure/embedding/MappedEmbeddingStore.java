@@ -0,0 +1,208 @@
+package com.example.hybridrag.infrastructure.embedding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk, memory-mapped embedding tier: a fixed-capacity open-addressing hash table in a single file.
+ * <p>
+ * Layout: 64-byte header (magic, version, dimensions, capacity, 32-byte model fingerprint) followed by
+ * {@code capacity} slots of [32-byte key | 8-byte CRC32C of key and vector | dimensions * float32]. An all-zero
+ * key marks an empty slot. Lookups probe a few slots from the key's home slot; when the probe window is full the
+ * home slot is overwritten (it is a cache, not a store). A fingerprint mismatch (embedding model or dimensions
+ * changed) wipes the file.
+ * <p>
+ * Dirty pages reach the disk in no particular order, so a crash can leave a slot torn. A write therefore clears
+ * the key first and publishes it last, and reads verify the checksum: a torn slot reads as a miss, never as a
+ * wrong embedding.
+ */
+final class MappedEmbeddingStore implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedEmbeddingStore.class);
+
+    private static final long MAGIC = 0x48524147454d4231L; // "HRAGEMB1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    static final int KEY_BYTES = 32;
+    private static final int CHECKSUM_BYTES = Long.BYTES;
+    private static final int VECTOR_OFFSET = KEY_BYTES + CHECKSUM_BYTES;
+    private static final byte[] EMPTY_KEY = new byte[KEY_BYTES];
+    private static final int PROBES = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int dimensions;
+    private final int capacity;
+    private final int slotBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    MappedEmbeddingStore(Path file, int dimensions, int requestedCapacity, byte[] fingerprint) throws IOException {
+        this.dimensions = dimensions;
+        this.slotBytes = VECTOR_OFFSET + dimensions * Float.BYTES;
+        // A single MappedByteBuffer is limited to 2 GB.
+        this.capacity = (int) Math.min(requestedCapacity, (Integer.MAX_VALUE - HEADER_BYTES) / slotBytes);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = HEADER_BYTES + (long) capacity * slotBytes;
+        boolean valid = channel.size() == size && headerMatches(fingerprint);
+        if (!valid) {
+            log.info("event=embedding_cache_disk_reset path={} dimensions={} capacity={} previousBytes={}",
+                    file, dimensions, capacity, channel.size());
+            channel.truncate(0);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (!valid) {
+            writeHeader(fingerprint);
+        }
+    }
+
+    float[] get(byte[] key) {
+        lock.readLock().lock();
+        try {
+            int home = homeSlot(key);
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (home + i) % capacity;
+                int state = compareKey(slot, key);
+                if (state == 0) {
+                    int off = offset(slot);
+                    if (buffer.getLong(off + KEY_BYTES) != checksum(key, off)) {
+                        // Torn by a crash mid-write; the next put of this key repairs the slot.
+                        return null;
+                    }
+                    float[] v = new float[dimensions];
+                    vectorSlice(off).asFloatBuffer().get(v);
+                    return v;
+                }
+                if (state < 0) {
+                    return null;
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(byte[] key, float[] embedding) {
+        if (embedding.length != dimensions) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int home = homeSlot(key);
+            int target = home;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (home + i) % capacity;
+                int state = compareKey(slot, key);
+                if (state <= 0) {
+                    target = slot;
+                    break;
+                }
+            }
+            int off = offset(target);
+            // Invalidate, write, publish: until the key is back the slot reads as empty.
+            buffer.put(off, EMPTY_KEY, 0, KEY_BYTES);
+            vectorSlice(off).asFloatBuffer().put(embedding);
+            buffer.putLong(off + KEY_BYTES, checksum(key, off));
+            buffer.put(off, key, 0, KEY_BYTES);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return 0 when the slot holds {@code key}, -1 when the slot is empty, 1 when it holds another key
+     */
+    private int compareKey(int slot, byte[] key) {
+        int off = offset(slot);
+        boolean empty = true;
+        boolean equal = true;
+        for (int i = 0; i < KEY_BYTES; i++) {
+            byte b = buffer.get(off + i);
+            if (b != 0) {
+                empty = false;
+            }
+            if (b != key[i]) {
+                equal = false;
+            }
+        }
+        if (equal) {
+            return 0;
+        }
+        return empty ? -1 : 1;
+    }
+
+    private ByteBuffer vectorSlice(int slotOffset) {
+        return buffer.slice(slotOffset + VECTOR_OFFSET, dimensions * Float.BYTES);
+    }
+
+    private long checksum(byte[] key, int slotOffset) {
+        CRC32C crc = new CRC32C();
+        crc.update(key, 0, KEY_BYTES);
+        crc.update(vectorSlice(slotOffset));
+        return crc.getValue();
+    }
+
+    private int homeSlot(byte[] key) {
+        long h = ByteBuffer.wrap(key, 0, Long.BYTES).getLong();
+        return (int) Long.remainderUnsigned(h, capacity);
+    }
+
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private boolean headerMatches(byte[] fingerprint) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES) {
+            return false;
+        }
+        if (header.getLong() != MAGIC || header.getInt() != VERSION
+                || header.getInt() != dimensions || header.getInt() != capacity) {
+            return false;
+        }
+        byte[] stored = new byte[KEY_BYTES];
+        header.get(stored);
+        return Arrays.equals(stored, fingerprint);
+    }
+
+    private void writeHeader(byte[] fingerprint) {
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, dimensions);
+        buffer.putInt(16, capacity);
+        buffer.put(20, fingerprint, 0, KEY_BYTES);
+        buffer.force();
+    }
+}
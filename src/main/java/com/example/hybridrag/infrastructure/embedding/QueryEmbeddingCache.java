@@ -0,0 +1,219 @@
+package com.example.hybridrag.infrastructure.embedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Small TTL cache for retrieval query embeddings, keyed by model + normalized query text.
+ * <p>
+ * Sits in front of the Ollama model on the retrieval critical path: repeated topics skip the Ollama call entirely,
+ * and concurrent misses for the same query share one in-flight embedding call. Failed loads are not cached.
+ * <p>
+ * It calls the Ollama model directly, not the primary {@link CachingEmbeddingModel}: that one persists every
+ * text to the on-disk chunk cache, and user queries must not end up on disk.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryEmbeddingCache.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final String model;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    private final Counter hits;
+    private final Counter coalesced;
+    private final Counter misses;
+    private final Counter savedSeconds;
+
+    public QueryEmbeddingCache(
+            OllamaEmbeddingModel embeddingModel,
+            MeterRegistry meterRegistry,
+            @Value("${hybridrag.query-embedding-cache.enabled}") boolean enabled,
+            @Value("${spring.ai.ollama.embedding.options.model:${spring.ai.ollama.embedding.model:}}") String model,
+            @Value("${hybridrag.query-embedding-cache.max-entries}") int maxEntries,
+            @Value("${hybridrag.query-embedding-cache.ttl-seconds}") long ttlSeconds
+    ) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.model = model;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+
+        int max = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > max;
+            }
+        };
+
+        this.hits = Counter.builder("hybridrag.query.embedding.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.coalesced = Counter.builder("hybridrag.query.embedding.cache.requests").tag("result", "coalesced").register(meterRegistry);
+        this.misses = Counter.builder("hybridrag.query.embedding.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.savedSeconds = Counter.builder("hybridrag.query.embedding.cache.saved")
+                .baseUnit("seconds")
+                .description("Embedding latency avoided by cache hits")
+                .register(meterRegistry);
+        meterRegistry.gauge("hybridrag.query.embedding.cache.size", this, c -> c.size());
+
+        log.info("event=query_embedding_cache_config enabled={} maxEntries={} ttlSeconds={}", enabled, max, ttlSeconds);
+    }
+
+    private record Loaded(float[] embedding, long loadNanos) {
+    }
+
+    private record Entry(CompletableFuture<Loaded> future, long expiresAtNanos) {
+        boolean expired(long now) {
+            return now - expiresAtNanos > 0;
+        }
+    }
+
+    public float[] embed(String query) {
+        if (!enabled) {
+            return embeddingModel.embed(query);
+        }
+        String key = model + "|" + CacheKeys.normalizeText(query);
+        long now = System.nanoTime();
+
+        Entry entry;
+        CompletableFuture<Loaded> mine = null;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || entry.expired(now) || entry.future().isCompletedExceptionally()) {
+                mine = new CompletableFuture<>();
+                entry = new Entry(mine, now + ttlNanos);
+                entries.put(key, entry);
+            }
+        }
+
+        if (mine == null) {
+            CompletableFuture<Loaded> f = entry.future();
+            if (f.isDone()) {
+                Loaded loaded = await(f);
+                hits.increment();
+                savedSeconds.increment(loaded.loadNanos() / 1e9);
+                return loaded.embedding();
+            }
+            coalesced.increment();
+            return await(f).embedding();
+        }
+
+        misses.increment();
+        long t0 = System.nanoTime();
+        try {
+            float[] embedding = embeddingModel.embed(query);
+            mine.complete(new Loaded(embedding, System.nanoTime() - t0));
+            return embedding;
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Embeddings for several queries, in order; all misses go to the model in a single batch call.
+     */
+    public List<float[]> embedAll(List<String> queries) {
+        if (!enabled) {
+            return embeddingModel.embed(queries);
+        }
+        int n = queries.size();
+        float[][] out = new float[n][];
+        List<CompletableFuture<Loaded>> pending = new ArrayList<>(n);
+        List<String> missKeys = new ArrayList<>();
+        List<Entry> missEntries = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+        long now = System.nanoTime();
+
+        synchronized (entries) {
+            for (int i = 0; i < n; i++) {
+                String key = model + "|" + CacheKeys.normalizeText(queries.get(i));
+                Entry entry = entries.get(key);
+                if (entry == null || entry.expired(now) || entry.future().isCompletedExceptionally()) {
+                    entry = new Entry(new CompletableFuture<>(), now + ttlNanos);
+                    entries.put(key, entry);
+                    missKeys.add(key);
+                    missEntries.add(entry);
+                    missTexts.add(queries.get(i));
+                }
+                // Duplicates within the batch (or another thread's load) share one future.
+                pending.add(entry.future());
+            }
+        }
+
+        if (!missTexts.isEmpty()) {
+            misses.increment(missTexts.size());
+            long t0 = System.nanoTime();
+            try {
+                List<float[]> embedded = embeddingModel.embed(missTexts);
+                if (embedded.size() != missTexts.size()) {
+                    throw new IllegalStateException("Embedding count mismatch: expected " + missTexts.size() + " got " + embedded.size());
+                }
+                long perQuery = (System.nanoTime() - t0) / missTexts.size();
+                for (int i = 0; i < missEntries.size(); i++) {
+                    missEntries.get(i).future().complete(new Loaded(embedded.get(i), perQuery));
+                }
+            } catch (RuntimeException e) {
+                synchronized (entries) {
+                    for (int i = 0; i < missKeys.size(); i++) {
+                        entries.remove(missKeys.get(i), missEntries.get(i));
+                    }
+                }
+                missEntries.forEach(entry -> entry.future().completeExceptionally(e));
+                throw e;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            out[i] = await(pending.get(i)).embedding();
+        }
+        hits.increment(n - missTexts.size());
+        return Arrays.asList(out);
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Waits for another caller's load. Interruptible, so a retrieval leg cancelled at its deadline (or losing a
+     * hedge) stops waiting instead of sitting out the Ollama call.
+     */
+    private static Loaded await(CompletableFuture<Loaded> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a query embedding", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException("Query embedding failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import com.example.hybridrag.infrastructure.vector.EmbeddedChunk;
+import com.example.hybridrag.infrastructure.vector.PgChunkWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ingest embedding stage: embeds chunks in batches with bounded in-flight concurrency toward the
+ * {@link EmbeddingModel} and pipelines the JDBC write of batch N with the embedding of batch N+1.
+ * <p>
+ * Writes are chained, so they stay serial and in batch order; the in-flight permit of a batch is released
+ * only after its write, which also bounds embedded-but-unwritten vectors held in memory.
+ * <p>
+ * When the run fails (deadline, abort, embedding or write error) it stops the chain before throwing: batches not
+ * yet written are skipped and a write already running is waited for. A caller that rolls back by fileId after
+ * {@link #run} threw therefore cannot race a late pgvector write.
+ */
+@Component
+public class EmbeddingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingPipeline.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final PgChunkWriter chunkWriter;
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    public EmbeddingPipeline(
+            EmbeddingModel embeddingModel,
+            PgChunkWriter chunkWriter,
+            @Qualifier("embeddingExecutor") Executor executor,
+            @Value("${hybridrag.ingest.embedding.batch-size}") int batchSize,
+            @Value("${hybridrag.ingest.embedding.max-in-flight}") int maxInFlight
+    ) {
+        this.embeddingModel = embeddingModel;
+        this.chunkWriter = chunkWriter;
+        this.executor = executor;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Embeds and writes all docs; blocks until the last batch is written.
+     *
+     * @param written       cumulative count of chunks embedded and written, reported after each batch
+     * @param deadlineNanos {@link System#nanoTime()} by which everything must be written
+     * @param aborted       polled between batches; stops submitting new batches once true
+     * @param sink          receives each batch's embedded chunks after its pgvector write, in batch order
+     * @throws RuntimeException once no write of this run is running or can still start
+     */
+    public void run(String fileId, List<Document> docs, IntConsumer written, long deadlineNanos, BooleanSupplier aborted,
+                    Consumer<List<EmbeddedChunk>> sink) {
+        long t0 = System.nanoTime();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicInteger done = new AtomicInteger();
+        WriteGate gate = new WriteGate();
+        PgChunkWriter.Session writer = chunkWriter.open();
+        CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+
+        try {
+            int batchNo = 0;
+            for (int from = 0; from < docs.size(); from += batchSize) {
+                if (writes.isCompletedExceptionally()) {
+                    break;
+                }
+                if (aborted.getAsBoolean()) {
+                    throw new IllegalStateException("Embedding pipeline aborted for fileId=" + fileId);
+                }
+                acquire(inFlight, deadlineNanos);
+
+                List<Document> batch = docs.subList(from, Math.min(docs.size(), from + batchSize));
+                int n = batchNo++;
+
+                CompletableFuture<Timed<List<float[]>>> embedded = CompletableFuture.supplyAsync(() -> {
+                    long s = System.nanoTime();
+                    List<float[]> vectors = embeddingModel.embed(batch.stream().map(Document::getText).toList());
+                    return new Timed<>(vectors, System.nanoTime() - s);
+                }, executor);
+
+                writes = writes.thenCombineAsync(embedded, (ignored, e) -> {
+                    long s = System.nanoTime();
+                    List<EmbeddedChunk> chunks = toChunks(batch, e.value());
+                    gate.write(() -> writer.write(chunks));
+                    long writeNs = System.nanoTime() - s;
+                    sink.accept(chunks);
+                    written.accept(done.addAndGet(batch.size()));
+                    log.info("event=embed_batch fileId={} batch={} size={} embed_ms={} write_ms={}",
+                            fileId, n, batch.size(), e.nanos() / 1_000_000, writeNs / 1_000_000);
+                    return null;
+                }, executor);
+                writes.whenComplete((r, e) -> inFlight.release());
+            }
+
+            await(writes, fileId, deadlineNanos);
+            writer.finish();
+            log.info("event=embed_pipeline_done fileId={} chunks={} batches={} batchSize={} maxInFlight={} ms={}",
+                    fileId, done.get(), batchNo, batchSize, maxInFlight, (System.nanoTime() - t0) / 1_000_000);
+        } catch (RuntimeException e) {
+            // Embedding calls still in flight are left to finish; their writes are refused by the closed gate.
+            gate.close();
+            writer.abort();
+            log.warn("event=embed_pipeline_stopped fileId={} written={} msg={}", fileId, done.get(), e.getMessage());
+            throw e;
+        }
+    }
+
+    private static void await(CompletableFuture<Void> writes, String fileId, long deadlineNanos) {
+        try {
+            writes.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Embedding pipeline missed its deadline for fileId=" + fileId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for embedding writes", e);
+        }
+    }
+
+    /**
+     * Serializes the chained writes against {@link #close}: after close returns, no write is running and every
+     * later one is refused. Writes are already serial (chained), so the lock is never contended by them.
+     */
+    private static final class WriteGate {
+
+        private boolean closed;
+
+        synchronized void write(Runnable write) {
+            if (closed) {
+                throw new CancellationException("Embedding pipeline stopped");
+            }
+            write.run();
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+
+    private static List<EmbeddedChunk> toChunks(List<Document> batch, List<float[]> vectors) {
+        if (vectors.size() != batch.size()) {
+            throw new IllegalStateException("Embedding count mismatch: expected " + batch.size() + " got " + vectors.size());
+        }
+        List<EmbeddedChunk> out = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Document d = batch.get(i);
+            out.add(new EmbeddedChunk(UUID.fromString(d.getId()), d.getText(), d.getMetadata(), vectors.get(i)));
+        }
+        return out;
+    }
+
+    private static void acquire(Semaphore semaphore, long deadlineNanos) {
+        try {
+            if (!semaphore.tryAcquire(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Embedding pipeline missed its deadline waiting for a slot");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an embedding slot", e);
+        }
+    }
+
+    private record Timed<T>(T value, long nanos) {
+    }
+}
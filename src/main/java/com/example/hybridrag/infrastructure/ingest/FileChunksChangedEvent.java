@@ -0,0 +1,13 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+/**
+ * Published after chunks of {@code fileId} were written to or deleted from the stores, so derived caches
+ * (retrieval results, in-memory indexes) can drop what they hold for that file.
+ */
+public record FileChunksChangedEvent(String fileId, Change change) {
+
+    public enum Change {
+        WRITTEN,
+        DELETED
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-file change counter for caches that fill asynchronously: snapshot {@link #current} before reading the stores,
+ * and only publish the result if it is still current afterwards.
+ * <p>
+ * Generations come from one clock, so a value is never reused. Only files that were written since startup have an
+ * entry; every other file (never written, or deleted) reports the shared baseline, which moves on each delete.
+ * That keeps the map as large as the set of live files while a snapshot taken before a delete still goes stale.
+ */
+public final class FileGenerations {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> written = new ConcurrentHashMap<>();
+    private volatile long baseline;
+
+    public long current(String fileId) {
+        Long g = written.get(fileId);
+        return g != null ? g : baseline;
+    }
+
+    public void advance(FileChunksChangedEvent event) {
+        long next = clock.incrementAndGet();
+        if (event.change() == FileChunksChangedEvent.Change.DELETED) {
+            baseline = next;
+            written.remove(event.fileId());
+        } else {
+            written.put(event.fileId(), next);
+        }
+    }
+
+    public int size() {
+        return written.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import java.util.List;
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Registry of ingested files (table rag_files), keyed by fileId and by SHA-256 of the uploaded bytes.
+ */
+@Repository
+public class FileRegistry {
+
+    private static final RowMapper<RegisteredFile> ROW_MAPPER = (rs, rowNum) -> new RegisteredFile(
+            rs.getString("file_id"),
+            rs.getString("sha256"),
+            rs.getString("file_name"),
+            rs.getInt("chunks")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FileRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record RegisteredFile(String fileId, String sha256, String fileName, int chunks) {
+    }
+
+    public Optional<RegisteredFile> findBySha256(String sha256) {
+        List<RegisteredFile> rows = jdbcTemplate.query(
+                "SELECT file_id, sha256, file_name, chunks FROM rag_files WHERE sha256 = ?",
+                ROW_MAPPER,
+                sha256
+        );
+        return rows.stream().findFirst();
+    }
+
+    public Optional<RegisteredFile> findByFileId(String fileId) {
+        List<RegisteredFile> rows = jdbcTemplate.query(
+                "SELECT file_id, sha256, file_name, chunks FROM rag_files WHERE file_id = ?",
+                ROW_MAPPER,
+                fileId
+        );
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * @return false when another upload with the same content registered first (unique sha256).
+     */
+    public boolean register(RegisteredFile file) {
+        int updated = jdbcTemplate.update(
+                "INSERT INTO rag_files (file_id, sha256, file_name, chunks) VALUES (?, ?, ?, ?) "
+                        + "ON CONFLICT (sha256) DO NOTHING",
+                file.fileId(),
+                file.sha256(),
+                file.fileName(),
+                file.chunks()
+        );
+        return updated == 1;
+    }
+}
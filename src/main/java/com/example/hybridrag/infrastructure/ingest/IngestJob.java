@@ -0,0 +1,32 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record IngestJob(
+        UUID jobId,
+        String fileId,
+        String fileName,
+        String sha256,
+        Status status,
+        IngestProgress.Stage stage,
+        int pagesExtracted,
+        int chunksTotal,
+        int chunksEmbedded,
+        int chunksIndexed,
+        String error,
+        Instant createdAt,
+        Instant updatedAt
+) {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    public boolean active() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+}
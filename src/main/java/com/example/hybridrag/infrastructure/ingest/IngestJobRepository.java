@@ -0,0 +1,157 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import jakarta.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Persistent ingest job table (rag_ingest_jobs).
+ */
+@Repository
+public class IngestJobRepository {
+
+    private static final String COLUMNS = "job_id, file_id, file_name, sha256, status, stage, pages_extracted, "
+            + "chunks_total, chunks_embedded, chunks_indexed, error, created_at, updated_at";
+
+    private static final RowMapper<IngestJob> ROW_MAPPER = (rs, rowNum) -> new IngestJob(
+            (UUID) rs.getObject("job_id"),
+            rs.getString("file_id"),
+            rs.getString("file_name"),
+            rs.getString("sha256"),
+            IngestJob.Status.valueOf(rs.getString("status")),
+            rs.getString("stage") == null ? null : IngestProgress.Stage.valueOf(rs.getString("stage")),
+            rs.getInt("pages_extracted"),
+            rs.getInt("chunks_total"),
+            rs.getInt("chunks_embedded"),
+            rs.getInt("chunks_indexed"),
+            rs.getString("error"),
+            toInstant(rs.getTimestamp("created_at")),
+            toInstant(rs.getTimestamp("updated_at"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IngestJobRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Databases initialised before job leases existed lack the lease columns (init.sql only runs once).
+     */
+    @PostConstruct
+    public void ensureLeaseColumns() {
+        jdbcTemplate.execute("ALTER TABLE rag_ingest_jobs ADD COLUMN IF NOT EXISTS owner varchar");
+        jdbcTemplate.execute("ALTER TABLE rag_ingest_jobs ADD COLUMN IF NOT EXISTS heartbeat_at timestamp NOT NULL DEFAULT now()");
+    }
+
+    public void create(UUID jobId, String fileId, String fileName, String sha256, String owner) {
+        jdbcTemplate.update(
+                "INSERT INTO rag_ingest_jobs (job_id, file_id, file_name, sha256, status, owner) VALUES (?, ?, ?, ?, ?, ?)",
+                jobId, fileId, fileName, sha256, IngestJob.Status.QUEUED.name(), owner
+        );
+    }
+
+    public Optional<IngestJob> findById(UUID jobId) {
+        return first(jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM rag_ingest_jobs WHERE job_id = ?", ROW_MAPPER, jobId));
+    }
+
+    public Optional<IngestJob> findActiveBySha256(String sha256) {
+        return first(jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM rag_ingest_jobs WHERE sha256 = ? AND status IN ('QUEUED', 'RUNNING') "
+                        + "ORDER BY created_at LIMIT 1", ROW_MAPPER, sha256));
+    }
+
+    public Optional<IngestJob> findActiveByFileId(String fileId) {
+        return first(jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM rag_ingest_jobs WHERE file_id = ? AND status IN ('QUEUED', 'RUNNING') "
+                        + "ORDER BY created_at LIMIT 1", ROW_MAPPER, fileId));
+    }
+
+    public void markRunning(UUID jobId) {
+        jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET status = ?, updated_at = now() WHERE job_id = ?",
+                IngestJob.Status.RUNNING.name(), jobId);
+    }
+
+    public void updateStage(UUID jobId, IngestProgress.Stage stage) {
+        jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET stage = ?, updated_at = now() WHERE job_id = ?",
+                stage.name(), jobId);
+    }
+
+    public void updateCounter(UUID jobId, Counter counter, int value) {
+        jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET " + counter.column + " = ?, updated_at = now() WHERE job_id = ?",
+                value, jobId);
+    }
+
+    public void markDone(UUID jobId, String fileId) {
+        jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET status = ?, file_id = ?, error = NULL, updated_at = now() WHERE job_id = ?",
+                IngestJob.Status.DONE.name(), fileId, jobId);
+    }
+
+    public void markFailed(UUID jobId, String error) {
+        jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET status = ?, error = ?, updated_at = now() WHERE job_id = ?",
+                IngestJob.Status.FAILED.name(), error, jobId);
+    }
+
+    /**
+     * Renews the lease of every active job owned by {@code owner}.
+     */
+    public int heartbeat(String owner) {
+        return jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET heartbeat_at = now() WHERE owner = ? AND status IN ('QUEUED', 'RUNNING')",
+                owner);
+    }
+
+    /**
+     * Active jobs whose owner stopped renewing the lease can never finish (their staged upload is gone with the
+     * instance). Jobs of other live instances keep a fresh heartbeat and are left alone.
+     */
+    public int failExpired(long leaseMs) {
+        return jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET status = ?, error = ?, updated_at = now() "
+                        + "WHERE status IN ('QUEUED', 'RUNNING') AND heartbeat_at < now() - make_interval(secs => ?)",
+                IngestJob.Status.FAILED.name(), "Interrupted: owning instance stopped", leaseMs / 1000.0);
+    }
+
+    /**
+     * Jobs a previous run of this same instance left QUEUED/RUNNING (stable instance id only).
+     */
+    public int failOwnedBy(String owner) {
+        return jdbcTemplate.update(
+                "UPDATE rag_ingest_jobs SET status = ?, error = ?, updated_at = now() "
+                        + "WHERE status IN ('QUEUED', 'RUNNING') AND owner = ?",
+                IngestJob.Status.FAILED.name(), "Interrupted by application restart", owner);
+    }
+
+    public enum Counter {
+        PAGES_EXTRACTED("pages_extracted"),
+        CHUNKS_TOTAL("chunks_total"),
+        CHUNKS_EMBEDDED("chunks_embedded"),
+        CHUNKS_INDEXED("chunks_indexed");
+
+        private final String column;
+
+        Counter(String column) {
+            this.column = column;
+        }
+    }
+
+    private static Optional<IngestJob> first(List<IngestJob> rows) {
+        return rows.stream().findFirst();
+    }
+
+    private static Instant toInstant(Timestamp ts) {
+        return ts == null ? null : ts.toInstant();
+    }
+}
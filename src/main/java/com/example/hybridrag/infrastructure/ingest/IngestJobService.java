@@ -0,0 +1,198 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import com.example.hybridrag.controller.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Asynchronous ingest: uploads are staged to disk, a job row is created and the pipeline runs on the bounded
+ * ingest worker pool. Progress is persisted per stage in rag_ingest_jobs.
+ * <p>
+ * Each job is owned by the instance that accepted it. The owner renews a heartbeat every
+ * {@code jobs.heartbeat-ms}; any instance fails active jobs whose heartbeat is older than {@code jobs.lease-ms},
+ * so a crashed instance's jobs are released without touching jobs other instances are still running.
+ */
+@Service
+public class IngestJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestJobService.class);
+
+    private final IngestService ingestService;
+    private final IngestJobRepository jobRepository;
+    private final ThreadPoolExecutor ingestExecutor;
+    private final String instanceId;
+    private final boolean stableInstanceId;
+    private final long heartbeatMs;
+    private final long leaseMs;
+    private final ScheduledExecutorService leaseScheduler;
+
+    public IngestJobService(
+            IngestService ingestService,
+            IngestJobRepository jobRepository,
+            @Qualifier("ingestExecutor") ThreadPoolExecutor ingestExecutor,
+            @Value("${hybridrag.ingest.jobs.instance-id:}") String instanceId,
+            @Value("${hybridrag.ingest.jobs.heartbeat-ms}") long heartbeatMs,
+            @Value("${hybridrag.ingest.jobs.lease-ms}") long leaseMs
+    ) {
+        this.ingestService = ingestService;
+        this.jobRepository = jobRepository;
+        this.ingestExecutor = ingestExecutor;
+        this.stableInstanceId = StringUtils.hasText(instanceId);
+        this.instanceId = stableInstanceId ? instanceId.trim() : UUID.randomUUID().toString();
+        this.heartbeatMs = Math.max(1000, heartbeatMs);
+        // A lease shorter than a few heartbeats would expire jobs of a live but briefly stalled owner.
+        this.leaseMs = Math.max(this.heartbeatMs * 3, leaseMs);
+        this.leaseScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-job-lease");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param jobId  null when the content was already ingested ({@code reused})
+     * @param status DONE when reused, otherwise the status of the (new or already running) job
+     */
+    public record Submission(UUID jobId, String fileId, IngestJob.Status status, int chunks, boolean reused) {
+    }
+
+    public Submission submit(MultipartFile pdf) {
+        StagedUpload upload = ingestService.stage(pdf);
+
+        Optional<IngestService.IngestResult> existing = ingestService.findIngested(upload.sha256());
+        if (existing.isPresent()) {
+            upload.delete();
+            IngestService.IngestResult r = existing.get();
+            return new Submission(null, r.fileId(), IngestJob.Status.DONE, r.chunks(), true);
+        }
+
+        Optional<IngestJob> running = jobRepository.findActiveBySha256(upload.sha256());
+        if (running.isPresent()) {
+            upload.delete();
+            IngestJob job = running.get();
+            log.info("event=ingest_job_joined jobId={} fileId={} sha256={}", job.jobId(), job.fileId(), upload.sha256());
+            return new Submission(job.jobId(), job.fileId(), job.status(), job.chunksTotal(), false);
+        }
+
+        UUID jobId = UUID.randomUUID();
+        String fileId = UUID.randomUUID().toString();
+        jobRepository.create(jobId, fileId, upload.fileName(), upload.sha256(), instanceId);
+
+        try {
+            ingestExecutor.execute(() -> run(jobId, fileId, upload));
+        } catch (RejectedExecutionException e) {
+            upload.delete();
+            jobRepository.markFailed(jobId, "Ingest queue is full");
+            log.warn("event=ingest_job_rejected jobId={} queued={}", jobId, ingestExecutor.getQueue().size());
+            throw new BusinessException("Ingest queue is full, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        log.info("event=ingest_job_queued jobId={} fileId={} file={} bytes={}",
+                jobId, fileId, upload.fileName(), upload.sizeBytes());
+        return new Submission(jobId, fileId, IngestJob.Status.QUEUED, 0, false);
+    }
+
+    public Optional<IngestJob> find(UUID jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    public Optional<IngestJob> findActiveByFileId(String fileId) {
+        return jobRepository.findActiveByFileId(fileId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLease() {
+        if (stableInstanceId) {
+            int n = jobRepository.failOwnedBy(instanceId);
+            if (n > 0) {
+                log.warn("event=ingest_jobs_interrupted owner={} count={}", instanceId, n);
+            }
+        }
+        log.info("event=ingest_job_lease_config owner={} heartbeatMs={} leaseMs={}", instanceId, heartbeatMs, leaseMs);
+        leaseScheduler.scheduleWithFixedDelay(this::renewLease, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopLease() {
+        leaseScheduler.shutdownNow();
+    }
+
+    private void renewLease() {
+        try {
+            jobRepository.heartbeat(instanceId);
+            int n = jobRepository.failExpired(leaseMs);
+            if (n > 0) {
+                log.warn("event=ingest_jobs_lease_expired count={} leaseMs={}", n, leaseMs);
+            }
+        } catch (Exception e) {
+            // Next tick retries; a database outage longer than the lease lets other instances fail our jobs.
+            log.warn("event=ingest_job_heartbeat_failed owner={} msg={}", instanceId, e.getMessage());
+        }
+    }
+
+    private void run(UUID jobId, String fileId, StagedUpload upload) {
+        long t0 = System.nanoTime();
+        try {
+            jobRepository.markRunning(jobId);
+            IngestService.IngestResult result = ingestService.ingest(upload, fileId, null, new JobProgress(jobId));
+            jobRepository.markDone(jobId, result.fileId());
+            log.info("event=ingest_job_done jobId={} fileId={} chunks={} ms={}",
+                    jobId, result.fileId(), result.chunks(), (System.nanoTime() - t0) / 1_000_000);
+        } catch (Exception e) {
+            log.error("event=ingest_job_failed jobId={} fileId={} msg={}", jobId, fileId, e.getMessage(), e);
+            jobRepository.markFailed(jobId, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+        } finally {
+            upload.delete();
+        }
+    }
+
+    private class JobProgress implements IngestProgress {
+
+        private final UUID jobId;
+
+        JobProgress(UUID jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void stage(Stage stage) {
+            jobRepository.updateStage(jobId, stage);
+        }
+
+        @Override
+        public void pagesExtracted(int pages) {
+            jobRepository.updateCounter(jobId, IngestJobRepository.Counter.PAGES_EXTRACTED, pages);
+        }
+
+        @Override
+        public void chunksTotal(int chunks) {
+            jobRepository.updateCounter(jobId, IngestJobRepository.Counter.CHUNKS_TOTAL, chunks);
+        }
+
+        @Override
+        public void chunksEmbedded(int chunks) {
+            jobRepository.updateCounter(jobId, IngestJobRepository.Counter.CHUNKS_EMBEDDED, chunks);
+        }
+
+        @Override
+        public void chunksIndexed(int chunks) {
+            jobRepository.updateCounter(jobId, IngestJobRepository.Counter.CHUNKS_INDEXED, chunks);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+/**
+ * Per-stage progress callbacks of the ingest pipeline. Counts are cumulative.
+ */
+public interface IngestProgress {
+
+    IngestProgress NONE = new IngestProgress() {
+    };
+
+    enum Stage {
+        EXTRACTING,
+        // embedding + pgvector write and Elasticsearch indexing, concurrently
+        WRITING
+    }
+
+    default void stage(Stage stage) {
+    }
+
+    default void pagesExtracted(int pages) {
+    }
+
+    default void chunksTotal(int chunks) {
+    }
+
+    default void chunksEmbedded(int chunks) {
+    }
+
+    default void chunksIndexed(int chunks) {
+    }
+}
@@ -1,19 +1,40 @@
 package com.example.hybridrag.infrastructure.ingest;
 
 import com.example.hybridrag.domain.dto.ExamDraftRequest;
+import com.example.hybridrag.infrastructure.config.RetrievalBackend;
 import com.example.hybridrag.infrastructure.search.ElasticsearchService;
+import com.example.hybridrag.infrastructure.search.EsBulkIndexer;
+import com.example.hybridrag.infrastructure.search.HotLexicalIndex;
+import com.example.hybridrag.infrastructure.vector.EmbeddedChunk;
+import com.example.hybridrag.infrastructure.vector.PgChunkWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -22,78 +43,301 @@ public class IngestService {
 
     private static final Logger log = LoggerFactory.getLogger(IngestService.class);
 
+    private static final int PAGE_PROGRESS_STEP = 10;
+
     private final PdfExtractor pdfExtractor;
     private final TokenTextChunker chunker;
-    private final PgVectorStore vectorStore;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final PgChunkWriter chunkWriter;
     private final ElasticsearchService elasticsearchService;
+    private final FileRegistry fileRegistry;
+    private final ApplicationEventPublisher events;
+    private final boolean writeElasticsearch;
+    private final boolean indexVectors;
+    private final HotLexicalIndex lexicalIndex;
+    private final boolean fillLexicalIndex;
+    private final Executor esFeedExecutor;
+    private final long writeDeadlineMs;
 
     public IngestService(
             PdfExtractor pdfExtractor,
             TokenTextChunker chunker,
-            PgVectorStore vectorStore,
-            ElasticsearchService elasticsearchService
+            EmbeddingPipeline embeddingPipeline,
+            PgChunkWriter chunkWriter,
+            ElasticsearchService elasticsearchService,
+            FileRegistry fileRegistry,
+            ApplicationEventPublisher events,
+            RetrievalBackend backend,
+            HotLexicalIndex lexicalIndex,
+            @Qualifier("esBulkFeedExecutor") Executor esFeedExecutor,
+            @Value("${hybridrag.ingest.write-deadline-ms}") long writeDeadlineMs
     ) {
         this.pdfExtractor = pdfExtractor;
         this.chunker = chunker;
-        this.vectorStore = vectorStore;
+        this.embeddingPipeline = embeddingPipeline;
+        this.chunkWriter = chunkWriter;
         this.elasticsearchService = elasticsearchService;
+        this.fileRegistry = fileRegistry;
+        this.events = events;
+        this.writeElasticsearch = backend.usesElasticsearch();
+        this.indexVectors = backend.indexesVectors();
+        this.lexicalIndex = lexicalIndex;
+        // Only the dual backend has a separate BM25 leg to serve from memory.
+        this.fillLexicalIndex = backend == RetrievalBackend.DUAL && lexicalIndex.enabled();
+        this.esFeedExecutor = esFeedExecutor;
+        this.writeDeadlineMs = Math.max(1, writeDeadlineMs);
     }
 
-    public record IngestResult(String fileId, int chunks) {}
-
     /**
-     * Offline ingest pipeline (performed synchronously per request here):
-     * PDF -> token chunking -> embeddings (Ollama) -> pgvector (PgVectorStore) -> raw text -> Elasticsearch bulk (BM25)
+     * @param reused true when the upload matched an already-indexed file (same SHA-256) and nothing was re-ingested
      */
+    public record IngestResult(String fileId, int chunks, boolean reused) {}
+
     public IngestResult ingest(ExamDraftRequest request, MultipartFile pdf) {
-        String fileId = UUID.randomUUID().toString();
+        return ingest(pdf, request == null ? null : request.getTopic());
+    }
+
+    /**
+     * Synchronous ingest of an upload; identical uploads (same SHA-256 of the bytes) are mapped to the
+     * already-indexed fileId.
+     */
+    public IngestResult ingest(MultipartFile pdf, String topic) {
+        StagedUpload upload = stage(pdf);
+        try {
+            Optional<IngestResult> existing = findIngested(upload.sha256());
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            return ingest(upload, UUID.randomUUID().toString(), topic, IngestProgress.NONE);
+        } finally {
+            upload.delete();
+        }
+    }
 
-        String extracted;
-        try (InputStream is = pdf.getInputStream()) {
-            extracted = pdfExtractor.extractText(is);
+    /**
+     * Copies the upload to a temp file, hashing it on the way.
+     */
+    public StagedUpload stage(MultipartFile pdf) {
+        String source = pdf.getOriginalFilename() == null ? "upload.pdf" : pdf.getOriginalFilename();
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile("hybridrag-upload-", ".pdf");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream is = new DigestInputStream(pdf.getInputStream(), digest);
+                 OutputStream os = Files.newOutputStream(tmp)) {
+                size = is.transferTo(os);
+            }
+            return new StagedUpload(tmp, HexFormat.of().formatHex(digest.digest()), source, size);
         } catch (IOException e) {
+            if (tmp != null) {
+                new StagedUpload(tmp, null, source, 0).delete();
+            }
             throw new RuntimeException("Failed to read PDF upload", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
+    }
+
+    public Optional<IngestResult> findIngested(String sha256) {
+        return fileRegistry.findBySha256(sha256).map(f -> {
+            log.info("event=ingest_reused fileId={} sha256={} chunks={}", f.fileId(), sha256, f.chunks());
+            return new IngestResult(f.fileId(), f.chunks(), true);
+        });
+    }
+
+    /**
+     * Offline ingest pipeline:
+     * PDF -> token chunking -> embeddings (Ollama, batched) -> pgvector -> raw text -> Elasticsearch bulk (BM25)
+     * <p>
+     * Registers the file under {@code fileId}; if a concurrent ingest of the same content registered first,
+     * its fileId is returned instead.
+     */
+    public IngestResult ingest(StagedUpload upload, String fileId, String topic, IngestProgress progress) {
+        // Pages are chunked as they stream out of the extractor.
+        progress.stage(IngestProgress.Stage.EXTRACTING);
+        List<TextChunk> chunks = new ArrayList<>();
+        TokenTextChunker.Session session = chunker.open(chunks::add);
+        int pages;
+        try {
+            pages = pdfExtractor.extractPages(upload.path(), (page, text) -> {
+                session.accept(page, text);
+                if (page % PAGE_PROGRESS_STEP == 0) {
+                    progress.pagesExtracted(page);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read PDF upload", e);
+        }
+        session.finish();
+        progress.pagesExtracted(pages);
 
-        List<String> chunks = chunker.chunk(extracted);
         if (chunks.isEmpty()) {
             throw new IllegalArgumentException("Uploaded PDF has no extractable text after chunking.");
         }
+        progress.chunksTotal(chunks.size());
 
         List<Document> docsForVector = new ArrayList<>(chunks.size());
         List<Map<String, Object>> docsForEs = new ArrayList<>(chunks.size());
 
         Instant now = Instant.now();
-        for (int i = 0; i < chunks.size(); i++) {
+        for (TextChunk chunk : chunks) {
             UUID id = UUID.randomUUID();
-            String content = chunks.get(i);
+            String content = chunk.content();
 
             Map<String, Object> md = new HashMap<>();
             md.put("fileId", fileId);
-            md.put("topic", request.getTopic());
-            md.put("chunkIndex", i);
-            md.put("source", pdf.getOriginalFilename() == null ? "upload.pdf" : pdf.getOriginalFilename());
+            if (topic != null) {
+                md.put("topic", topic);
+            }
+            md.put("chunkIndex", chunk.index());
+            md.put("pageStart", chunk.pageStart());
+            md.put("pageEnd", chunk.pageEnd());
+            md.put("source", upload.fileName());
             md.put("createdAt", now.toString());
 
             Document doc = new Document(id.toString(), content, md);
             docsForVector.add(doc);
 
-            docsForEs.add(ElasticsearchService.esDoc(id, fileId, content, md));
+            if (writeElasticsearch && !indexVectors) {
+                docsForEs.add(ElasticsearchService.esDoc(id, fileId, content, md));
+            }
         }
 
+        // pgvector (embed + write) and Elasticsearch (raw text) run concurrently under one deadline;
+        // if either fails, both are stopped and, once neither can write any more, rolled back by fileId.
+        progress.stage(IngestProgress.Stage.WRITING);
         long t0 = System.nanoTime();
-        vectorStore.add(docsForVector);
-        long t1 = System.nanoTime();
-        elasticsearchService.bulkIndex(docsForEs);
-        long t2 = System.nanoTime();
+        long deadline = t0 + TimeUnit.MILLISECONDS.toNanos(writeDeadlineMs);
+
+        // postgres backend: the full-text column is generated from the pgvector row, nothing goes to Elasticsearch.
+        // elasticsearch backend: documents need their embedding, so each batch is added to the bulk session as soon
+        // as the pipeline has written it to pgvector; only the final wait comes after the last batch.
+        EsBulkIndexer.Session es = writeElasticsearch ? elasticsearchService.openBulk(chunks.size()) : null;
+        CompletableFuture<Void> feedF = writeElasticsearch && !indexVectors
+                ? feedAsync(es, docsForEs)
+                : CompletableFuture.completedFuture(null);
+        BooleanSupplier esFailed = writeElasticsearch
+                ? () -> es.failed() || feedF.isCompletedExceptionally()
+                : () -> false;
+
+        long pgDone;
+        long esDone;
+        try {
+            embeddingPipeline.run(fileId, docsForVector, progress::chunksEmbedded, deadline, esFailed,
+                    !indexVectors ? batch -> { } : batch -> {
+                        for (EmbeddedChunk c : batch) {
+                            es.add(ElasticsearchService.esDoc(c.id(), fileId, c.content(), c.metadata(), c.embedding()));
+                        }
+                    });
+            pgDone = System.nanoTime();
+            esDone = t0;
+            if (writeElasticsearch) {
+                // The bulk requests ran alongside the pipeline; only the final wait is left, and it blocks this
+                // thread rather than one the embedding pipelines of other ingests need.
+                feedF.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                es.await(deadline);
+                esDone = System.nanoTime();
+            }
+            progress.chunksIndexed(chunks.size());
+        } catch (RuntimeException | ExecutionException | TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            rollback(fileId, es, cause);
+            throw new IllegalStateException("Ingest write failed for fileId=" + fileId + ", rolled back: " + cause.getMessage(), cause);
+        }
 
-        log.info("event=ingest_complete fileId={} chunks={} pg_ms={} es_ms={}",
+        log.info("event=ingest_complete fileId={} pages={} chunks={} pg_ms={} es_ms={} total_ms={}",
                 fileId,
+                pages,
                 chunks.size(),
-                (t1 - t0) / 1_000_000,
-                (t2 - t1) / 1_000_000
+                (pgDone - t0) / 1_000_000,
+                (esDone - t0) / 1_000_000,
+                (Math.max(pgDone, esDone) - t0) / 1_000_000
         );
+        events.publishEvent(new FileChunksChangedEvent(fileId, FileChunksChangedEvent.Change.WRITTEN));
+        if (fillLexicalIndex) {
+            fillLexicalIndex(fileId, docsForVector);
+        }
+
+        if (!fileRegistry.register(new FileRegistry.RegisteredFile(fileId, upload.sha256(), upload.fileName(), chunks.size()))) {
+            // A concurrent upload of the same content registered first; answer with its fileId.
+            FileRegistry.RegisteredFile winner = fileRegistry.findBySha256(upload.sha256())
+                    .orElseThrow(() -> new IllegalStateException("File registry conflict without a row for sha256=" + upload.sha256()));
+            log.warn("event=ingest_duplicate_race fileId={} winnerFileId={} sha256={}", fileId, winner.fileId(), upload.sha256());
+            deleteChunks(fileId);
+            return new IngestResult(winner.fileId(), winner.chunks(), true);
+        }
+
+        return new IngestResult(fileId, chunks.size(), false);
+    }
+
+    /**
+     * The BM25 leg can answer from memory right away instead of waiting for an Elasticsearch refresh.
+     */
+    private void fillLexicalIndex(String fileId, List<Document> docs) {
+        List<UUID> ids = new ArrayList<>(docs.size());
+        List<String> contents = new ArrayList<>(docs.size());
+        List<Map<String, Object>> metadata = new ArrayList<>(docs.size());
+        for (Document d : docs) {
+            ids.add(UUID.fromString(d.getId()));
+            contents.add(d.getText());
+            metadata.add(d.getMetadata());
+        }
+        try {
+            lexicalIndex.put(fileId, ids, contents, metadata);
+        } catch (RuntimeException e) {
+            log.warn("event=lexical_index_fill_failed fileId={} msg={}", fileId, e.getMessage());
+        }
+    }
 
-        return new IngestResult(fileId, chunks.size());
+    /**
+     * Hands the text-only documents to the bulk session while the pipeline embeds; {@code add} blocks whenever the
+     * session's in-flight request limit is reached, so this runs on its own pool, not the embedding one.
+     */
+    private CompletableFuture<Void> feedAsync(EsBulkIndexer.Session es, List<Map<String, Object>> docs) {
+        return CompletableFuture.runAsync(() -> {
+            for (Map<String, Object> doc : docs) {
+                es.add(doc);
+            }
+        }, esFeedExecutor);
+    }
+
+    /**
+     * Compensation for a failed dual write: stop both legs, then delete the file's chunks from both stores so no
+     * vector is left without its BM25 twin (or vice versa). The pgvector leg has already stopped when the pipeline
+     * threw; cancelling the bulk session waits out its in-flight requests, so nothing lands after the delete.
+     */
+    private void rollback(String fileId, EsBulkIndexer.Session es, Throwable cause) {
+        log.warn("event=ingest_write_failed fileId={} msg={}", fileId, cause.getMessage());
+        if (es != null) {
+            try {
+                es.cancel();
+            } catch (RuntimeException e) {
+                log.warn("event=ingest_rollback_es_cancel_failed fileId={} msg={}", fileId, e.getMessage());
+            }
+        }
+        deleteChunks(fileId);
+    }
+
+    private void deleteChunks(String fileId) {
+        int pgDeleted = -1;
+        long esDeleted = -1;
+        try {
+            pgDeleted = chunkWriter.deleteByFileId(fileId);
+        } catch (RuntimeException e) {
+            log.error("event=ingest_rollback_pg_failed fileId={} msg={}", fileId, e.getMessage(), e);
+        }
+        if (writeElasticsearch) {
+            try {
+                esDeleted = elasticsearchService.deleteByFileId(fileId);
+            } catch (RuntimeException e) {
+                log.error("event=ingest_rollback_es_failed fileId={} msg={}", fileId, e.getMessage(), e);
+            }
+        }
+        log.warn("event=ingest_chunks_deleted fileId={} pg_deleted={} es_deleted={}", fileId, pgDeleted, esDeleted);
+        events.publishEvent(new FileChunksChangedEvent(fileId, FileChunksChangedEvent.Change.DELETED));
     }
-}
\ No newline at end of file
+}
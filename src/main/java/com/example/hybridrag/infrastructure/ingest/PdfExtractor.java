@@ -1,22 +1,148 @@
 package com.example.hybridrag.infrastructure.ingest;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Page-parallel, streaming PDF text extraction.
+ * <p>
+ * PDDocument is not thread-safe, so each worker opens its own scratch-file-backed instance and pulls the next
+ * page number from a shared counter. Pages are handed to the {@link PageSink} strictly in order; a small window
+ * bounds how far workers may run ahead of the sink.
+ */
 @Component
 public class PdfExtractor {
 
-    public String extractText(InputStream pdfStream) throws IOException {
-        try (PDDocument document = PDDocument.load(pdfStream)) {
+    private static final Logger log = LoggerFactory.getLogger(PdfExtractor.class);
+
+    private final Executor executor;
+    private final int parallelism;
+    private final long maxMainMemoryBytes;
+
+    public PdfExtractor(
+            @Qualifier("pdfExtractExecutor") Executor executor,
+            @Value("${hybridrag.ingest.pdf.parallelism}") int parallelism,
+            @Value("${hybridrag.ingest.pdf.max-main-memory-mb}") int maxMainMemoryMb
+    ) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxMainMemoryBytes = Math.max(1, maxMainMemoryMb) * 1024L * 1024L;
+    }
+
+    @FunctionalInterface
+    public interface PageSink {
+        /**
+         * @param pageNumber 1-based
+         */
+        void accept(int pageNumber, String text);
+    }
+
+    /**
+     * @return number of pages in the document
+     */
+    public int extractPages(Path pdf, PageSink sink) throws IOException {
+        long t0 = System.nanoTime();
+
+        int pages;
+        try (PDDocument document = load(pdf)) {
+            pages = document.getNumberOfPages();
+        }
+        if (pages == 0) {
+            return 0;
+        }
+
+        int workers = Math.min(parallelism, pages);
+        List<CompletableFuture<String>> pageTexts = new ArrayList<>(pages);
+        for (int i = 0; i < pages; i++) {
+            pageTexts.add(new CompletableFuture<>());
+        }
+
+        AtomicInteger nextPage = new AtomicInteger(1);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        Semaphore window = new Semaphore(workers * 2);
+
+        for (int w = 0; w < workers; w++) {
+            executor.execute(() -> extractWorker(pdf, pages, nextPage, window, aborted, pageTexts));
+        }
+
+        try {
+            for (int p = 1; p <= pages; p++) {
+                String text = pageTexts.get(p - 1).join();
+                window.release();
+                sink.accept(p, text);
+            }
+        } catch (CompletionException e) {
+            abort(aborted, window, workers);
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException("PDF extraction failed", e.getCause());
+        } catch (RuntimeException e) {
+            abort(aborted, window, workers);
+            throw e;
+        }
+
+        log.info("event=pdf_extract_done pages={} workers={} ms={}",
+                pages, workers, (System.nanoTime() - t0) / 1_000_000);
+        return pages;
+    }
+
+    private void extractWorker(
+            Path pdf,
+            int pages,
+            AtomicInteger nextPage,
+            Semaphore window,
+            AtomicBoolean aborted,
+            List<CompletableFuture<String>> pageTexts
+    ) {
+        try (PDDocument document = load(pdf)) {
             PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
-            if (text == null) {
-                return "";
+            while (!aborted.get()) {
+                window.acquire();
+                int p = nextPage.getAndIncrement();
+                if (p > pages || aborted.get()) {
+                    window.release();
+                    return;
+                }
+                stripper.setStartPage(p);
+                stripper.setEndPage(p);
+                String text = stripper.getText(document);
+                pageTexts.get(p - 1).complete(text == null ? "" : text.replace("\u0000", ""));
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Fail every page not yet extracted so the in-order consumer never waits forever.
+            for (CompletableFuture<String> f : pageTexts) {
+                f.completeExceptionally(e);
             }
-            return text.replace("\u0000", "").trim();
         }
     }
-}
\ No newline at end of file
+
+    private PDDocument load(Path pdf) throws IOException {
+        return PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupMixed(maxMainMemoryBytes));
+    }
+
+    private static void abort(AtomicBoolean aborted, Semaphore window, int workers) {
+        aborted.set(true);
+        // Wake workers blocked on the window so they observe the abort flag.
+        window.release(workers);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Upload copied to a local temp file (hashed while copying), so ingest can outlive the HTTP request.
+ */
+public record StagedUpload(Path path, String sha256, String fileName, long sizeBytes) {
+
+    private static final Logger log = LoggerFactory.getLogger(StagedUpload.class);
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("event=staged_upload_delete_failed path={} msg={}", path, e.getMessage());
+        }
+    }
+}
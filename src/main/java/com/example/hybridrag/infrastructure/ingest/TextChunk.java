@@ -0,0 +1,8 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+/**
+ * @param pageStart 1-based page of the first token
+ * @param pageEnd   1-based page of the last token
+ */
+public record TextChunk(int index, String content, int pageStart, int pageEnd) {
+}
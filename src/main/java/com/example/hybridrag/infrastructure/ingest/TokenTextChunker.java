@@ -2,15 +2,13 @@ package com.example.hybridrag.infrastructure.ingest;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TokenTextChunker {
 
-    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
-
     private final int chunkTokens;
     private final int overlapTokens;
     private final int minChars;
@@ -36,47 +34,164 @@ public class TokenTextChunker {
      * Overlap is applied as sliding window.
      */
     public List<String> chunk(String text) {
-        String cleaned = text == null ? "" : text.trim();
-        if (cleaned.isEmpty()) {
-            return List.of();
+        List<String> chunks = new ArrayList<>();
+        Session session = open(c -> chunks.add(c.content()));
+        session.accept(1, text);
+        session.finish();
+        return chunks;
+    }
+
+    /**
+     * Streaming variant of {@link #chunk(String)}: text is fed page by page, chunks are emitted as soon as their
+     * window is complete and carry the page range they were cut from.
+     */
+    public Session open(Consumer<TextChunk> sink) {
+        return new Session(sink);
+    }
+
+    /**
+     * Single-pass, offset-based chunking session.
+     * <p>
+     * Incoming text is appended once to a buffer and scanned once; tokens are kept as (start, end) offsets into
+     * that buffer, so windows and overlaps never copy token text. A chunk becomes a String only when it is handed
+     * to the sink. The buffer prefix no longer referenced by the window (or the held-back chunk) is compacted away.
+     */
+    public final class Session {
+
+        private final Consumer<TextChunk> sink;
+        private final StringBuilder buf = new StringBuilder();
+
+        // Sliding window of tokens: offsets into buf and the page each one came from.
+        private final int[] tokStart = new int[chunkTokens];
+        private final int[] tokEnd = new int[chunkTokens];
+        private final int[] tokPage = new int[chunkTokens];
+        private int tokCount;
+        // Tokens at the head of the window already covered by an emitted chunk (the overlap).
+        private int covered;
+
+        // Last chunk is held back (as offsets): a short follow-up chunk may still be merged into it.
+        private boolean hasPending;
+        private int pendingStart;
+        private int pendingEnd;
+        private int pendingPageStart;
+        private int pendingPageEnd;
+        private int emitted;
+
+        private Session(Consumer<TextChunk> sink) {
+            this.sink = sink;
         }
 
-        String[] tokens = WHITESPACE.split(cleaned);
-        List<String> chunks = new ArrayList<>();
+        public void accept(int pageNumber, CharSequence text) {
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            if (!buf.isEmpty()) {
+                // Page separator: a chunk spanning the break must not glue the last and first words together.
+                buf.append('\n');
+            }
+            int offset = buf.length();
+            buf.append(text);
 
-        int start = 0;
-        while (start < tokens.length) {
-            int end = Math.min(tokens.length, start + chunkTokens);
-            String chunk = join(tokens, start, end).trim();
-
-            if (chunk.length() >= minChars) {
-                chunks.add(chunk);
-            } else {
-                if (!chunks.isEmpty() && (chunks.get(chunks.size() - 1).length() < (minChars * 2))) {
-                    String merged = (chunks.get(chunks.size() - 1) + "\n" + chunk).trim();
-                    chunks.set(chunks.size() - 1, merged);
-                } else if (!chunk.isBlank()) {
-                    chunks.add(chunk);
+            int end = buf.length();
+            int tokenStart = -1;
+            for (int i = offset; i < end; i++) {
+                if (isWhitespace(buf.charAt(i))) {
+                    if (tokenStart >= 0) {
+                        addToken(tokenStart, i, pageNumber);
+                        tokenStart = -1;
+                    }
+                } else if (tokenStart < 0) {
+                    tokenStart = i;
                 }
             }
+            // Page end always closes a token.
+            if (tokenStart >= 0) {
+                addToken(tokenStart, end, pageNumber);
+            }
+            compact();
+        }
 
-            if (end >= tokens.length) {
-                break;
+        public void finish() {
+            if (tokCount > covered) {
+                cut(tokCount);
+            }
+            tokCount = 0;
+            covered = 0;
+            if (hasPending) {
+                emitPending();
             }
-            start = Math.max(0, end - overlapTokens);
+            buf.setLength(0);
         }
 
-        return chunks;
-    }
+        private void addToken(int start, int end, int page) {
+            tokStart[tokCount] = start;
+            tokEnd[tokCount] = end;
+            tokPage[tokCount] = page;
+            tokCount++;
+
+            if (tokCount == chunkTokens) {
+                cut(chunkTokens);
+                int step = chunkTokens - overlapTokens;
+                int keep = tokCount - step;
+                System.arraycopy(tokStart, step, tokStart, 0, keep);
+                System.arraycopy(tokEnd, step, tokEnd, 0, keep);
+                System.arraycopy(tokPage, step, tokPage, 0, keep);
+                tokCount = keep;
+                covered = keep;
+            }
+        }
+
+        private void cut(int end) {
+            int start = tokStart[0];
+            int stop = tokEnd[end - 1];
+            int pageStart = tokPage[0];
+            int pageEnd = tokPage[end - 1];
+
+            if (stop - start < minChars && hasPending && (pendingEnd - pendingStart) < (minChars * 2)) {
+                // Merge: windows overlap or touch, so the union span covers both without duplication.
+                pendingEnd = Math.max(pendingEnd, stop);
+                pendingPageEnd = pageEnd;
+                return;
+            }
+            if (hasPending) {
+                emitPending();
+            }
+            hasPending = true;
+            pendingStart = start;
+            pendingEnd = stop;
+            pendingPageStart = pageStart;
+            pendingPageEnd = pageEnd;
+        }
+
+        private void emitPending() {
+            String content = buf.substring(pendingStart, pendingEnd);
+            hasPending = false;
+            sink.accept(new TextChunk(emitted++, content, pendingPageStart, pendingPageEnd));
+        }
 
-    private static String join(String[] tokens, int start, int end) {
-        StringBuilder sb = new StringBuilder(Math.max(0, (end - start) * 8));
-        for (int i = start; i < end; i++) {
-            sb.append(tokens[i]);
-            if (i < end - 1) {
-                sb.append(' ');
+        /**
+         * Drops the buffer prefix nobody references any more; amortized by only compacting once it dominates.
+         */
+        private void compact() {
+            int keepFrom = tokCount > 0 ? tokStart[0] : buf.length();
+            if (hasPending) {
+                keepFrom = Math.min(keepFrom, pendingStart);
             }
+            if (keepFrom == 0 || keepFrom < buf.length() / 2) {
+                return;
+            }
+            buf.delete(0, keepFrom);
+            for (int i = 0; i < tokCount; i++) {
+                tokStart[i] -= keepFrom;
+                tokEnd[i] -= keepFrom;
+            }
+            pendingStart -= keepFrom;
+            pendingEnd -= keepFrom;
         }
-        return sb.toString();
     }
-}
\ No newline at end of file
+
+    // Same set as the regex \s: [ \t\n\x0B\f\r]
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
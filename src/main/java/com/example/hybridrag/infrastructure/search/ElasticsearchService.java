@@ -1,19 +1,27 @@
 package com.example.hybridrag.infrastructure.search;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchQuery;
-import co.elastic.clients.elasticsearch.core.BulkRequest;
-import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
-import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.example.hybridrag.application.service.ScoredChunk;
+import com.example.hybridrag.infrastructure.embedding.QueryEmbeddingCache;
+import com.example.hybridrag.infrastructure.vector.VectorMath;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -27,131 +35,327 @@ public class ElasticsearchService {
 
     private static final Logger log = LoggerFactory.getLogger(ElasticsearchService.class);
 
+    private static final String EMBEDDING = "embedding";
+    private static final List<String> BM25_SOURCE_FIELDS = List.of("content", "metadata");
+    private static final List<String> MULTI_FILE_SOURCE_FIELDS = List.of("fileId", "content", "metadata");
+    private static final List<String> HYBRID_SOURCE_FIELDS = List.of("content", "metadata", EMBEDDING);
+
     private final ElasticsearchClient client;
+    private final EsBulkIndexer bulkIndexer;
+    private final EsIndexManager indexManager;
+    private final QueryEmbeddingCache queryEmbeddings;
     private final String indexName;
+    private final int knnNumCandidates;
 
     public ElasticsearchService(
             ElasticsearchClient client,
-            @Value("${hybridrag.elasticsearch.index}") String indexName
+            EsBulkIndexer bulkIndexer,
+            EsIndexManager indexManager,
+            QueryEmbeddingCache queryEmbeddings,
+            @Value("${hybridrag.elasticsearch.knn.num-candidates}") int knnNumCandidates
     ) {
         this.client = client;
-        this.indexName = indexName;
+        this.bulkIndexer = bulkIndexer;
+        this.indexManager = indexManager;
+        this.queryEmbeddings = queryEmbeddings;
+        this.indexName = indexManager.indexName();
+        this.knnNumCandidates = Math.max(1, knnNumCandidates);
     }
 
     public record EsHit(UUID id, String fileId, String content, Map<String, Object> metadata, double bm25Score) {
     }
 
-    public void ensureIndexExists() {
+    /**
+     * Hits of {@link #hybridSearch}, fused score already set, plus every hit's embedding for MMR.
+     */
+    public record HybridHits(List<ScoredChunk> chunks, Map<UUID, float[]> embeddings) {
+    }
+
+    /**
+     * Streaming bulk load into the chunk index (see {@link EsBulkIndexer.Session}).
+     */
+    public EsBulkIndexer.Session openBulk(int expectedDocs) {
+        // Index must exist with our mappings before the first bulk, or ES auto-creates it with dynamic ones.
+        indexManager.ensureReady();
+        return bulkIndexer.open(indexName, expectedDocs);
+    }
+
+    /**
+     * Removes every chunk of a file (used to roll back a partially written ingest).
+     *
+     * @return number of documents deleted
+     */
+    public long deleteByFileId(String fileId) {
         try {
-            boolean exists = client.indices().exists(e -> e.index(indexName)).value();
-            if (exists) {
-                return;
-            }
-            client.indices().create(c -> c
-                    .index(indexName)
-                    .mappings(m -> m
-                            .properties("id", p -> p.keyword(k -> k))
-                            .properties("fileId", p -> p.keyword(k -> k))
-                            .properties("content", p -> p.text(t -> t))
-                            .properties("metadata", p -> p.object(o -> o.enabled(true)))
-                            .properties("createdAt", p -> p.date(d -> d))
-                    )
-                    .settings(s -> s
-                            .numberOfShards("1")
-                            .numberOfReplicas("0")
-                    )
-            );
-            log.info("event=es_index_created index={}", indexName);
+            DeleteByQueryResponse resp = indexManager.withIndex(() -> {
+                // delete_by_query only sees refreshed documents; make a just-written bulk visible first.
+                client.indices().refresh(r -> r.index(indexName));
+                return client.deleteByQuery(d -> d
+                        .index(indexName)
+                        .routing(fileId)
+                        .query(q -> q.term(t -> t.field("fileId").value(fileId)))
+                        .conflicts(Conflicts.Proceed)
+                        .refresh(true)
+                );
+            });
+            long deleted = resp.deleted() == null ? 0 : resp.deleted();
+            log.info("event=es_delete_by_file fileId={} deleted={}", fileId, deleted);
+            return deleted;
         } catch (IOException e) {
-            throw new RuntimeException("Failed to ensure Elasticsearch index exists: " + indexName, e);
+            throw new RuntimeException("Elasticsearch delete by fileId failed: " + fileId, e);
         }
     }
 
-    public void bulkIndex(List<Map<String, Object>> docs) {
-        if (docs == null || docs.isEmpty()) {
-            return;
-        }
-        ensureIndexExists();
-
-        List<BulkOperation> ops = new ArrayList<>(docs.size());
-        for (Map<String, Object> doc : docs) {
-            Object id = doc.get("id");
-            if (id == null) {
-                throw new IllegalArgumentException("Elasticsearch bulk document missing 'id'");
-            }
-            ops.add(BulkOperation.of(b -> b
-                    .index(i -> i
+    public List<EsHit> bm25Search(String fileId, String queryText, int topK) {
+        try {
+            // Routed to the file's shard; no hit counting, and the shard request cache may answer repeats until
+            // the next refresh. Only what fusion needs comes back: id from _id, fileId is the argument.
+            SearchResponse<Map> response = indexManager.withIndex(() -> client.search(s -> s
                             .index(indexName)
-                            .id(String.valueOf(id))
-                            .document(doc)
-                    )));
+                            .routing(fileId)
+                            .query(bm25Query(fileId, queryText))
+                            .size(topK)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .requestCache(true)
+                            .source(src -> src.filter(f -> f.includes(BM25_SOURCE_FIELDS))),
+                    Map.class
+            ));
+
+            List<EsHit> hits = toEsHits(fileId, response.hits().hits());
+            log.info("event=es_bm25_search fileId={} topK={} returned={}",
+                    fileId, topK, hits.size());
+            return hits;
+        } catch (IOException e) {
+            throw new RuntimeException("Elasticsearch BM25 search failed", e);
         }
+    }
 
+    /**
+     * {@link #bm25Search} for several queries over one file in a single {@code _msearch} request. Results are in
+     * query order; a query whose search failed gets {@code null}, so callers can tell it from a query without
+     * matches.
+     */
+    public List<List<EsHit>> bm25SearchBatch(String fileId, List<String> queries, int topK) {
         try {
-            BulkRequest request = BulkRequest.of(b -> b.operations(ops));
-            BulkResponse resp = client.bulk(request);
-
-            if (resp.errors()) {
-                resp.items().forEach(item -> {
-                    if (item.error() != null) {
-                        log.error("event=es_bulk_item_error id={} reason={}",
-                                item.id(),
-                                item.error().reason());
-                    }
-                });
+            MsearchResponse<Map> response = indexManager.withIndex(() -> client.msearch(m -> {
+                m.index(indexName);
+                for (String queryText : queries) {
+                    m.searches(item -> item
+                            .header(h -> h.routing(fileId).requestCache(true))
+                            .body(b -> b
+                                    .query(bm25Query(fileId, queryText))
+                                    .size(topK)
+                                    .trackTotalHits(t -> t.enabled(false))
+                                    .source(src -> src.filter(f -> f.includes(BM25_SOURCE_FIELDS)))));
+                }
+                return m;
+            }, Map.class));
 
-                log.warn("event=es_bulk_index_errors index={} took={}ms errors=true",
-                        indexName, resp.took());
-            } else {
-                log.info("event=es_bulk_index_ok index={} count={} took={}ms",
-                        indexName, docs.size(), resp.took());
+            List<List<EsHit>> out = new ArrayList<>(queries.size());
+            int failed = 0;
+            for (MultiSearchResponseItem<Map> item : response.responses()) {
+                if (item.isFailure()) {
+                    failed++;
+                    log.warn("event=es_bm25_search_batch_item_failed fileId={} reason={}",
+                            fileId, item.failure().error().reason());
+                    out.add(null);
+                } else {
+                    out.add(toEsHits(fileId, item.result().hits().hits()));
+                }
+            }
+            if (failed == queries.size() && failed > 0) {
+                throw new RuntimeException("Elasticsearch BM25 batch search failed for every query");
             }
+            log.info("event=es_bm25_search_batch fileId={} queries={} topK={} failed={} tookMs={}",
+                    fileId, queries.size(), topK, failed, response.took());
+            return out;
         } catch (IOException e) {
-            throw new RuntimeException("Elasticsearch bulk index failed", e);
+            throw new RuntimeException("Elasticsearch BM25 batch search failed", e);
         }
     }
 
-    public List<EsHit> bm25Search(String fileId, String queryText, int topK) {
-        ensureIndexExists();
+    /**
+     * BM25 over several files in one request: a {@code terms} filter on fileId, routed to the files' shards only.
+     * Scores come from one query, so they are comparable across files.
+     */
+    public List<EsHit> bm25SearchFiles(List<String> fileIds, String queryText, int size) {
         try {
-            Query termFilter = TermQuery.of(t -> t.field("fileId").value(fileId))._toQuery();
+            Query filesFilter = TermsQuery.of(t -> t
+                    .field("fileId")
+                    .terms(v -> v.value(fileIds.stream().map(FieldValue::of).toList())))._toQuery();
             Query match = MatchQuery.of(m -> m.field("content").query(queryText))._toQuery();
 
-            BoolQuery bool = BoolQuery.of(b -> b
-                    .filter(termFilter)
-                    .must(match)
-            );
-
-            SearchResponse<Map> response = client.search(s -> s
+            SearchResponse<Map> response = indexManager.withIndex(() -> client.search(s -> s
                             .index(indexName)
-                            .query(bool._toQuery())
-                            .size(topK)
-                            .sort(so -> so.score(sc -> sc.order(SortOrder.Desc))),
+                            .routing(String.join(",", fileIds))
+                            .query(q -> q.bool(b -> b.filter(filesFilter).must(match)))
+                            .size(size)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .requestCache(true)
+                            .source(src -> src.filter(f -> f.includes(MULTI_FILE_SOURCE_FIELDS))),
                     Map.class
-            );
+            ));
 
-            List<EsHit> hits = new ArrayList<>();
+            List<EsHit> hits = new ArrayList<>(response.hits().hits().size());
             for (Hit<Map> hit : response.hits().hits()) {
                 Map src = hit.source();
-                if (src == null) {
+                if (src == null || hit.id() == null) {
                     continue;
                 }
-                UUID id = UUID.fromString(String.valueOf(src.get("id")));
-                String fid = String.valueOf(src.get("fileId"));
-                String content = String.valueOf(src.get("content"));
                 Map<String, Object> metadata = (Map<String, Object>) src.getOrDefault("metadata", Map.of());
-                double score = hit.score() == null ? 0.0 : hit.score();
-                hits.add(new EsHit(id, fid, content, metadata, score));
+                hits.add(new EsHit(
+                        UUID.fromString(hit.id()),
+                        String.valueOf(src.get("fileId")),
+                        String.valueOf(src.get("content")),
+                        metadata,
+                        hit.score() == null ? 0.0 : hit.score()));
             }
-
-            log.info("event=es_bm25_search fileId={} topK={} returned={}",
-                    fileId, topK, hits.size());
+            log.info("event=es_bm25_search_files files={} size={} returned={} tookMs={}",
+                    fileIds.size(), size, hits.size(), response.took());
             return hits;
         } catch (IOException e) {
-            throw new RuntimeException("Elasticsearch BM25 search failed", e);
+            throw new RuntimeException("Elasticsearch multi-file BM25 search failed", e);
         }
     }
 
+    private static Query bm25Query(String fileId, String queryText) {
+        Query termFilter = TermQuery.of(t -> t.field("fileId").value(fileId))._toQuery();
+        Query match = MatchQuery.of(m -> m.field("content").query(queryText))._toQuery();
+
+        return BoolQuery.of(b -> b
+                .filter(termFilter)
+                .must(match)
+        )._toQuery();
+    }
+
+    private static List<EsHit> toEsHits(String fileId, List<Hit<Map>> found) {
+        List<EsHit> hits = new ArrayList<>(found.size());
+        for (Hit<Map> hit : found) {
+            Map src = hit.source();
+            if (src == null || hit.id() == null) {
+                continue;
+            }
+            UUID id = UUID.fromString(hit.id());
+            String content = String.valueOf(src.get("content"));
+            Map<String, Object> metadata = (Map<String, Object>) src.getOrDefault("metadata", Map.of());
+            double score = hit.score() == null ? 0.0 : hit.score();
+            hits.add(new EsHit(id, fileId, content, metadata, score));
+        }
+        return hits;
+    }
+
+    /**
+     * kNN over {@code embedding} and BM25 over {@code content}, both filtered to the file, as the two searches of
+     * one {@code _msearch}. The fused score is what ES would sum for the two legs in a single search: the kNN score
+     * ((1 + cosine) / 2) weighted by {@code alpha}, BM25 by {@code 1 - alpha}, a leg that did not return the chunk
+     * adding 0. Unlike the JVM fusion, BM25 is not min-max normalized, so alpha weighs raw scores.
+     * <p>
+     * Running the legs separately keeps their scores apart: every chunk carries the exact cosine score of its
+     * embedding as vector score and its own BM25 score (0 when BM25 did not return it), so callers can fuse chunks
+     * of several files again on one scale.
+     */
+    public HybridHits hybridSearch(String fileId, String queryText, int topK, double alpha) {
+        float[] queryVector = queryEmbeddings.embed(queryText);
+        List<Float> vector = new ArrayList<>(queryVector.length);
+        for (float v : queryVector) {
+            vector.add(v);
+        }
+        double queryNorm = Math.sqrt(VectorMath.dot(queryVector, queryVector));
+        try {
+            Query termFilter = TermQuery.of(t -> t.field("fileId").value(fileId))._toQuery();
+            Query match = MatchQuery.of(m -> m.field("content").query(queryText))._toQuery();
+
+            // Union of the kNN top-k and the BM25 top-k, like the dual backend's merge.
+            MsearchResponse<Map> response = indexManager.withIndex(() -> client.msearch(m -> m
+                            .index(indexName)
+                            .searches(item -> item
+                                    .header(h -> h.routing(fileId))
+                                    .body(b -> b
+                                            .knn(k -> k
+                                                    .field(EMBEDDING)
+                                                    .queryVector(vector)
+                                                    .k((long) topK)
+                                                    .numCandidates((long) Math.max(topK, knnNumCandidates))
+                                                    .filter(termFilter))
+                                            .size(topK)
+                                            .trackTotalHits(t -> t.enabled(false))
+                                            .source(src -> src.filter(f -> f.includes(HYBRID_SOURCE_FIELDS)))))
+                            .searches(item -> item
+                                    .header(h -> h.routing(fileId).requestCache(true))
+                                    .body(b -> b
+                                            .query(q -> q.bool(bq -> bq.filter(termFilter).must(match)))
+                                            .size(topK)
+                                            .trackTotalHits(t -> t.enabled(false))
+                                            .source(src -> src.filter(f -> f.includes(HYBRID_SOURCE_FIELDS))))),
+                    Map.class
+            ));
+            List<MultiSearchResponseItem<Map>> items = response.responses();
+            for (MultiSearchResponseItem<Map> item : items) {
+                if (item.isFailure()) {
+                    throw new RuntimeException("Elasticsearch hybrid search failed: " + item.failure().error().reason());
+                }
+            }
+
+            // id -> {kNN score, BM25 score}, plus the first source seen for it.
+            Map<UUID, double[]> legScores = new LinkedHashMap<>();
+            Map<UUID, Map> sources = new HashMap<>();
+            for (int leg = 0; leg < 2; leg++) {
+                for (Hit<Map> hit : items.get(leg).result().hits().hits()) {
+                    if (hit.source() == null || hit.id() == null) {
+                        continue;
+                    }
+                    UUID id = UUID.fromString(hit.id());
+                    legScores.computeIfAbsent(id, x -> new double[2])[leg] = hit.score() == null ? 0.0 : hit.score();
+                    sources.putIfAbsent(id, hit.source());
+                }
+            }
+
+            List<ScoredChunk> chunks = new ArrayList<>(legScores.size());
+            Map<UUID, float[]> embeddings = new HashMap<>();
+            for (Map.Entry<UUID, double[]> e : legScores.entrySet()) {
+                UUID id = e.getKey();
+                Map src = sources.get(id);
+                Map<String, Object> metadata = (Map<String, Object>) src.getOrDefault("metadata", Map.of());
+                float[] embedding = toFloats(src.get(EMBEDDING));
+                double vectorScore = e.getValue()[0];
+                if (embedding != null && embedding.length == queryVector.length) {
+                    embeddings.put(id, embedding);
+                    double norms = queryNorm * Math.sqrt(VectorMath.dot(embedding, embedding));
+                    vectorScore = norms == 0.0 ? 0.0 : (1.0 + VectorMath.dot(queryVector, embedding) / norms) / 2.0;
+                }
+                double bm25Score = e.getValue()[1];
+                chunks.add(new ScoredChunk(
+                        id,
+                        fileId,
+                        String.valueOf(src.get("content")),
+                        metadata,
+                        vectorScore,
+                        bm25Score,
+                        alpha * e.getValue()[0] + (1.0 - alpha) * bm25Score
+                ));
+            }
+            chunks.sort(Comparator.comparingDouble(ScoredChunk::fusedScore).reversed());
+
+            log.info("event=es_hybrid_search fileId={} topK={} alpha={} knnN={} bm25N={} returned={} tookMs={}",
+                    fileId, topK, alpha, items.get(0).result().hits().hits().size(),
+                    items.get(1).result().hits().hits().size(), chunks.size(), response.took());
+            return new HybridHits(chunks, embeddings);
+        } catch (IOException e) {
+            throw new RuntimeException("Elasticsearch hybrid search failed", e);
+        }
+    }
+
+    private static float[] toFloats(Object value) {
+        if (!(value instanceof List<?> list)) {
+            return null;
+        }
+        float[] out = new float[list.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ((Number) list.get(i)).floatValue();
+        }
+        return out;
+    }
+
     public static Map<String, Object> esDoc(UUID id, String fileId, String content, Map<String, Object> metadata) {
         return Map.of(
                 "id", id.toString(),
@@ -161,4 +365,14 @@ public class ElasticsearchService {
                 "createdAt", Instant.now().toString()
         );
     }
+
+    /**
+     * {@link #esDoc(UUID, String, String, Map)} plus the chunk embedding, for the elasticsearch retrieval backend.
+     */
+    public static Map<String, Object> esDoc(UUID id, String fileId, String content, Map<String, Object> metadata,
+                                            float[] embedding) {
+        Map<String, Object> doc = new HashMap<>(esDoc(id, fileId, content, metadata));
+        doc.put(EMBEDDING, embedding);
+        return doc;
+    }
 }
\ No newline at end of file
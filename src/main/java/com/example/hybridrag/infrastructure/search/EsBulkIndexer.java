@@ -0,0 +1,370 @@
+package com.example.hybridrag.infrastructure.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.transport.TransportException;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streaming bulk indexing on top of the client's {@link BulkIngester}.
+ * <p>
+ * Requests are flushed by document count and byte size with a bounded number of concurrent in-flight requests
+ * ({@code add} blocks when that limit is reached, which back-pressures the caller). Items rejected with 429 are
+ * re-queued with exponential backoff; any other item failure, or exhausted retries, fails the whole session.
+ * Large loads can optionally run with {@code refresh_interval=-1}, restored when the last large load finishes.
+ */
+@Component
+public class EsBulkIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(EsBulkIndexer.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ElasticsearchClient client;
+    private final int maxOperations;
+    private final long maxBytes;
+    private final int maxConcurrentRequests;
+    private final long flushIntervalMs;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final int largeLoadDocs;
+    private final String refreshInterval;
+
+    private final ScheduledExecutorService retryScheduler;
+    private final AtomicInteger largeLoads = new AtomicInteger();
+
+    public EsBulkIndexer(
+            ElasticsearchClient client,
+            @Value("${hybridrag.elasticsearch.bulk.max-operations}") int maxOperations,
+            @Value("${hybridrag.elasticsearch.bulk.max-bytes}") long maxBytes,
+            @Value("${hybridrag.elasticsearch.bulk.max-concurrent-requests}") int maxConcurrentRequests,
+            @Value("${hybridrag.elasticsearch.bulk.flush-interval-ms}") long flushIntervalMs,
+            @Value("${hybridrag.elasticsearch.bulk.max-retries}") int maxRetries,
+            @Value("${hybridrag.elasticsearch.bulk.retry-backoff-ms}") long retryBackoffMs,
+            @Value("${hybridrag.elasticsearch.bulk.large-load-docs}") int largeLoadDocs,
+            @Value("${hybridrag.elasticsearch.bulk.refresh-interval}") String refreshInterval
+    ) {
+        this.client = client;
+        this.maxOperations = Math.max(1, maxOperations);
+        this.maxBytes = Math.max(1024, maxBytes);
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMs = Math.max(1, retryBackoffMs);
+        this.largeLoadDocs = largeLoadDocs;
+        this.refreshInterval = refreshInterval;
+
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "es-bulk-retry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private record Item(String id, Map<String, Object> doc, int attempt) {
+    }
+
+    /**
+     * Starts a streaming bulk load; documents are flushed while the caller is still producing them.
+     *
+     * @param expectedDocs decides whether this is a large load (refresh disabled while it runs)
+     */
+    public Session open(String index, int expectedDocs) {
+        return new Session(index, largeLoadDocs > 0 && expectedDocs >= largeLoadDocs);
+    }
+
+    /**
+     * One streaming bulk load with its own {@link BulkIngester}. {@link #add} may be called from any thread;
+     * {@link #await} seals the session and waits (bounded) for the outcome, {@link #cancel} abandons it. Either way, once
+     * they return no request of this session is still in flight, so a rollback that runs afterwards sees every
+     * document that will ever be written.
+     */
+    public final class Session {
+
+        private final String index;
+        private final boolean large;
+        private final long t0 = System.nanoTime();
+        private final BulkIngester<Item> ingester;
+        // One extra count for "still adding", released by await().
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicInteger added = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger retried = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        // Guarded by this: sealed = no more add(); closing = no more retries either.
+        private boolean sealed;
+        private boolean closing;
+
+        private Session(String index, boolean large) {
+            this.index = index;
+            this.large = large;
+            if (large) {
+                beginLargeLoad(index);
+            }
+            this.ingester = BulkIngester.of(b -> b
+                    .client(client)
+                    .maxOperations(maxOperations)
+                    .maxSize(maxBytes)
+                    .maxConcurrentRequests(maxConcurrentRequests)
+                    .flushInterval(flushIntervalMs, TimeUnit.MILLISECONDS)
+                    .listener(new Listener())
+            );
+        }
+
+        /**
+         * Queues one document; blocks while the in-flight request limit is reached.
+         */
+        public synchronized void add(Map<String, Object> doc) {
+            if (sealed) {
+                throw new IllegalStateException("Elasticsearch bulk session for " + index + " is closed");
+            }
+            Object id = doc.get("id");
+            if (id == null) {
+                failed.incrementAndGet();
+                throw new IllegalArgumentException("Elasticsearch bulk document missing 'id'");
+            }
+            Item item = new Item(String.valueOf(id), doc, 0);
+            pending.incrementAndGet();
+            added.incrementAndGet();
+            ingester.add(operation(index, item), item);
+        }
+
+        /**
+         * True once any document has definitively failed; the load can no longer succeed.
+         */
+        public boolean failed() {
+            return failed.get() > 0;
+        }
+
+        /**
+         * Seals the session and blocks until every added document is indexed or has definitively failed, at most
+         * until {@code deadlineNanos} ({@link System#nanoTime()}). Past the deadline the session is cancelled,
+         * which still waits for requests already in flight, so a caller rolling back afterwards is not raced.
+         */
+        public void await(long deadlineNanos) {
+            synchronized (this) {
+                sealed = true;
+            }
+            settle();
+            try {
+                done.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                log.warn("event=es_bulk_index_timeout index={} count={} pending={}", index, added.get(), pending.get());
+                throw new IllegalStateException("Elasticsearch bulk index missed its deadline with "
+                        + pending.get() + " of " + added.get() + " documents pending", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Elasticsearch bulk index failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Elasticsearch bulk index", e);
+            } finally {
+                close();
+            }
+
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            if (failed.get() > 0) {
+                log.warn("event=es_bulk_index_errors index={} count={} failed={} retried={} requests={} ms={}",
+                        index, added.get(), failed.get(), retried.get(), requests.get(), ms);
+                throw new IllegalStateException("Elasticsearch bulk index failed for " + failed.get() + " of "
+                        + added.get() + " documents");
+            }
+            log.info("event=es_bulk_index_ok index={} count={} retried={} requests={} ms={}",
+                    index, added.get(), retried.get(), requests.get(), ms);
+        }
+
+        /**
+         * Stops accepting documents and retries, then closes the ingester, which sends what it still buffers
+         * and waits for every in-flight request. Idempotent; a no-op after {@link #await} returned.
+         */
+        public void cancel() {
+            close();
+        }
+
+        private void close() {
+            boolean first;
+            synchronized (this) {
+                sealed = true;
+                first = !closing;
+                closing = true;
+            }
+            if (!first) {
+                closed.join();
+                return;
+            }
+            try {
+                ingester.close();
+            } finally {
+                if (large) {
+                    endLargeLoad(index);
+                }
+                closed.complete(null);
+            }
+        }
+
+        private void retry(Item item, String reason) {
+            if (item.attempt() >= maxRetries) {
+                log.error("event=es_bulk_item_retries_exhausted id={} attempts={} reason={}", item.id(), item.attempt() + 1, reason);
+                fail();
+                return;
+            }
+            retried.incrementAndGet();
+            Item next = new Item(item.id(), item.doc(), item.attempt() + 1);
+            long delay = retryBackoffMs << Math.min(item.attempt(), 10);
+            // Never re-add from the listener thread: add() may block on the in-flight limit.
+            retryScheduler.schedule(() -> readd(next), delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void readd(Item item) {
+            synchronized (this) {
+                if (!closing) {
+                    try {
+                        ingester.add(operation(index, item), item);
+                        return;
+                    } catch (RuntimeException e) {
+                        log.error("event=es_bulk_retry_enqueue_failed id={} msg={}", item.id(), e.getMessage());
+                    }
+                }
+            }
+            fail();
+        }
+
+        private void fail() {
+            failed.incrementAndGet();
+            settle();
+        }
+
+        private void settle() {
+            if (pending.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+
+        private final class Listener implements BulkListener<Item> {
+
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request, List<Item> contexts) {
+                requests.incrementAndGet();
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, List<Item> contexts, BulkResponse response) {
+                List<BulkResponseItem> items = response.items();
+                for (int i = 0; i < contexts.size(); i++) {
+                    Item ctx = contexts.get(i);
+                    BulkResponseItem item = i < items.size() ? items.get(i) : null;
+                    if (item == null || item.error() == null) {
+                        settle();
+                    } else if (item.status() == TOO_MANY_REQUESTS) {
+                        retry(ctx, "429");
+                    } else {
+                        log.error("event=es_bulk_item_error id={} status={} reason={}",
+                                ctx.id(), item.status(), item.error().reason());
+                        fail();
+                    }
+                }
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, List<Item> contexts, Throwable failure) {
+                boolean throttled = isTooManyRequests(failure);
+                for (Item ctx : contexts) {
+                    if (throttled) {
+                        retry(ctx, "429");
+                    } else {
+                        fail();
+                    }
+                }
+                if (!throttled) {
+                    log.error("event=es_bulk_request_failed index={} docs={} msg={}",
+                            index, contexts.size(), failure.getMessage(), failure);
+                }
+            }
+        }
+    }
+
+    private static BulkOperation operation(String index, Item item) {
+        return BulkOperation.of(b -> b
+                .index(i -> i
+                        .index(index)
+                        .id(item.id())
+                        .routing(routing(item.doc()))
+                        .document(item.doc())
+                ));
+    }
+
+    /**
+     * Chunks are routed by fileId, so a file's documents live on one shard (see {@link EsIndexManager}).
+     */
+    private static String routing(Map<String, Object> doc) {
+        Object fileId = doc.get("fileId");
+        return fileId == null ? null : String.valueOf(fileId);
+    }
+
+    private static boolean isTooManyRequests(Throwable failure) {
+        if (failure instanceof ElasticsearchException ee) {
+            return ee.status() == TOO_MANY_REQUESTS;
+        }
+        if (failure instanceof TransportException te) {
+            return te.statusCode() == TOO_MANY_REQUESTS;
+        }
+        return false;
+    }
+
+    private void beginLargeLoad(String index) {
+        if (largeLoads.getAndIncrement() == 0) {
+            setRefreshInterval(index, "-1");
+        }
+    }
+
+    private void endLargeLoad(String index) {
+        if (largeLoads.decrementAndGet() == 0) {
+            setRefreshInterval(index, refreshInterval);
+            try {
+                client.indices().refresh(r -> r.index(index));
+            } catch (IOException | RuntimeException e) {
+                log.warn("event=es_refresh_failed index={} msg={}", index, e.getMessage());
+            }
+        }
+    }
+
+    private void setRefreshInterval(String index, String value) {
+        try {
+            client.indices().putSettings(p -> p
+                    .index(index)
+                    .settings(s -> s.refreshInterval(t -> t.time(value)))
+            );
+            log.info("event=es_refresh_interval index={} value={}", index, value);
+        } catch (IOException | RuntimeException e) {
+            // Loading with the default refresh is slower but still correct.
+            log.warn("event=es_refresh_interval_failed index={} value={} msg={}", index, value, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.hybridrag.infrastructure.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch.indices.GetMappingResponse;
+import co.elastic.clients.elasticsearch.indices.get_mapping.IndexMappingRecord;
+import co.elastic.clients.json.JsonData;
+import com.example.hybridrag.infrastructure.config.RetrievalBackend;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns the chunk index lifecycle: bootstrap at startup, versioned mappings/settings, and a cached "index ready"
+ * flag so the retrieval hot path does not pay an {@code indices().exists} round trip per call.
+ * <p>
+ * The mapping carries {@code _meta.schemaVersion}; an existing index with an older version gets the current
+ * (additive) mappings and dynamic settings applied. The ready flag is only re-checked after ES reports
+ * {@code index_not_found_exception} (see {@link #withIndex}).
+ * <p>
+ * Documents are routed by {@code fileId}: every chunk of a file lands on one shard, and per-file queries pass the
+ * same routing so only that shard is searched. Routing is required by the mapping of indexes created by this
+ * version. The shard count only applies when the index is created; indexes from earlier versions have a single
+ * shard, where routing changes nothing, and need a reindex to spread out.
+ */
+@Component
+public class EsIndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(EsIndexManager.class);
+
+    /**
+     * Bump when {@link #properties} or the managed settings change.
+     */
+    static final int SCHEMA_VERSION = 2;
+
+    private static final String INDEX_NOT_FOUND = "index_not_found_exception";
+
+    private final ElasticsearchClient client;
+    private final String indexName;
+    private final String replicas;
+    private final String shards;
+    private final int dimensions;
+    private final RetrievalBackend backend;
+
+    private volatile boolean ready;
+
+    public EsIndexManager(
+            ElasticsearchClient client,
+            @Value("${hybridrag.elasticsearch.index}") String indexName,
+            @Value("${hybridrag.elasticsearch.replicas}") int replicas,
+            @Value("${hybridrag.elasticsearch.shards}") int shards,
+            @Value("${hybridrag.pgvector.dimensions}") int dimensions,
+            RetrievalBackend backend
+    ) {
+        this.client = client;
+        this.indexName = indexName;
+        this.replicas = String.valueOf(Math.max(0, replicas));
+        this.shards = String.valueOf(Math.max(1, shards));
+        this.dimensions = dimensions;
+        this.backend = backend;
+    }
+
+    @FunctionalInterface
+    public interface IndexCall<T> {
+        T call() throws IOException;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!backend.usesElasticsearch()) {
+            log.info("event=es_index_bootstrap_skipped index={} backend={}", indexName, backend);
+            return;
+        }
+        try {
+            ensureReady();
+        } catch (RuntimeException e) {
+            // ES may still be starting; the first hot-path call retries.
+            log.warn("event=es_index_bootstrap_failed index={} msg={}", indexName, e.getMessage());
+        }
+    }
+
+    public String indexName() {
+        return indexName;
+    }
+
+    public void ensureReady() {
+        if (ready) {
+            return;
+        }
+        synchronized (this) {
+            if (ready) {
+                return;
+            }
+            try {
+                boolean exists = client.indices().exists(e -> e.index(indexName)).value();
+                if (exists) {
+                    upgradeIfNeeded();
+                } else {
+                    create();
+                }
+                ready = true;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to ensure Elasticsearch index exists: " + indexName, e);
+            }
+        }
+    }
+
+    public void invalidate() {
+        ready = false;
+    }
+
+    /**
+     * Runs an index operation; on {@code index_not_found_exception} the ready flag is dropped, the index is
+     * re-bootstrapped and the call retried once.
+     */
+    public <T> T withIndex(IndexCall<T> call) throws IOException {
+        ensureReady();
+        try {
+            return call.call();
+        } catch (ElasticsearchException e) {
+            if (e.error() == null || !INDEX_NOT_FOUND.equals(e.error().type())) {
+                throw e;
+            }
+            log.warn("event=es_index_missing index={} action=rebootstrap", indexName);
+            invalidate();
+            ensureReady();
+            return call.call();
+        }
+    }
+
+    private void create() throws IOException {
+        client.indices().create(c -> c
+                .index(indexName)
+                .mappings(m -> m
+                        .meta(meta())
+                        .routing(r -> r.required(true))
+                        .properties(properties(dimensions))
+                )
+                .settings(s -> s
+                        .numberOfShards(shards)
+                        .numberOfReplicas(replicas)
+                )
+        );
+        log.info("event=es_index_created index={} schemaVersion={} shards={}", indexName, SCHEMA_VERSION, shards);
+    }
+
+    private void upgradeIfNeeded() throws IOException {
+        int current = currentSchemaVersion();
+        if (current >= SCHEMA_VERSION) {
+            return;
+        }
+        client.indices().putMapping(p -> p
+                .index(indexName)
+                .meta(meta())
+                .properties(properties(dimensions))
+        );
+        client.indices().putSettings(p -> p
+                .index(indexName)
+                .settings(s -> s.numberOfReplicas(replicas))
+        );
+        log.info("event=es_index_upgraded index={} fromVersion={} toVersion={}", indexName, current, SCHEMA_VERSION);
+    }
+
+    private int currentSchemaVersion() throws IOException {
+        GetMappingResponse resp = client.indices().getMapping(g -> g.index(indexName));
+        for (IndexMappingRecord rec : resp.result().values()) {
+            Map<String, JsonData> meta = rec.mappings().meta();
+            JsonData v = meta == null ? null : meta.get("schemaVersion");
+            if (v != null) {
+                return v.to(Integer.class);
+            }
+        }
+        return 0;
+    }
+
+    private static Map<String, JsonData> meta() {
+        return Map.of("schemaVersion", JsonData.of(SCHEMA_VERSION));
+    }
+
+    /**
+     * v2: {@code embedding} (dense_vector, cosine) for the elasticsearch retrieval backend. Documents indexed in that
+     * mode carry it; older ones get it copied from pgvector by {@link EsVectorBackfill}.
+     */
+    private static Map<String, Property> properties(int dimensions) {
+        Map<String, Property> props = new LinkedHashMap<>();
+        props.put("id", Property.of(p -> p.keyword(k -> k)));
+        props.put("fileId", Property.of(p -> p.keyword(k -> k)));
+        props.put("content", Property.of(p -> p.text(t -> t)));
+        props.put("metadata", Property.of(p -> p.object(o -> o.enabled(true))));
+        props.put("createdAt", Property.of(p -> p.date(d -> d)));
+        props.put("embedding", Property.of(p -> p.denseVector(v -> v
+                .dims(dimensions)
+                .index(true)
+                .similarity("cosine"))));
+        return props;
+    }
+}
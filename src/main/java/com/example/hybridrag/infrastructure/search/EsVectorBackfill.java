@@ -0,0 +1,247 @@
+package com.example.hybridrag.infrastructure.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.example.hybridrag.infrastructure.config.RetrievalBackend;
+import com.example.hybridrag.infrastructure.ingest.FileChunksChangedEvent;
+import com.example.hybridrag.infrastructure.vector.PgVectors;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Copies embeddings from pgvector into chunk documents that were indexed without one, for the elasticsearch
+ * retrieval backend.
+ * <p>
+ * Documents written under the dual backend only carry text, and an upload of the same PDF is mapped to the existing
+ * fileId (SHA-256 dedup), so re-uploading never re-indexes them. After startup the files with such documents are
+ * found with one aggregation and updated in the background, a keyset-paged pgvector read and a partial-update bulk
+ * per page. Until a file is done {@link #vectorsReady} is false for it and retrieval serves it the dual way
+ * (pgvector kNN + Elasticsearch BM25) instead of a kNN that would silently miss it. Before the first scan has
+ * finished that holds for every file.
+ */
+@Component
+public class EsVectorBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(EsVectorBackfill.class);
+
+    private static final String EMBEDDING = "embedding";
+    private static final UUID MIN_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final ElasticsearchClient client;
+    private final EsIndexManager indexManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxFilesPerScan;
+    private final long retryMs;
+    private final String pageSql;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Files whose pgvector rows were all copied; their documents without a pgvector row are not retried.
+    private final Set<String> done = ConcurrentHashMap.newKeySet();
+    private volatile boolean scanned;
+    private final ScheduledExecutorService scheduler;
+
+    public EsVectorBackfill(
+            ElasticsearchClient client,
+            EsIndexManager indexManager,
+            JdbcTemplate jdbcTemplate,
+            RetrievalBackend backend,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.elasticsearch.backfill.batch-size}") int batchSize,
+            @Value("${hybridrag.elasticsearch.backfill.max-files-per-scan}") int maxFilesPerScan,
+            @Value("${hybridrag.elasticsearch.backfill.retry-ms}") long retryMs
+    ) {
+        this.client = client;
+        this.indexManager = indexManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = backend.indexesVectors();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxFilesPerScan = Math.max(1, maxFilesPerScan);
+        this.retryMs = Math.max(1000, retryMs);
+        this.pageSql = "SELECT id, vector_send(embedding) AS embedding_bin FROM " + schema + "." + table
+                + " WHERE file_id = ? AND id > ? ORDER BY id LIMIT ?";
+        this.scanned = !enabled;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "es-vector-backfill");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            scheduler.execute(this::pass);
+        }
+    }
+
+    /**
+     * True when every document of the file carries its embedding (as far as this instance knows), i.e. kNN over
+     * the chunk index covers the file.
+     */
+    public boolean vectorsReady(String fileId) {
+        return scanned && !pending.contains(fileId);
+    }
+
+    @EventListener
+    public void onFileChunksChanged(FileChunksChangedEvent event) {
+        if (event.change() == FileChunksChangedEvent.Change.DELETED) {
+            pending.remove(event.fileId());
+            done.remove(event.fileId());
+        }
+    }
+
+    /**
+     * One scan plus the backfill of every file it found; rescheduled while anything failed or the scan was capped.
+     */
+    private void pass() {
+        List<String> files;
+        try {
+            files = scan();
+        } catch (IOException | RuntimeException e) {
+            log.warn("event=es_vector_backfill_scan_failed retry_ms={} msg={}", retryMs, e.getMessage());
+            scheduler.schedule(this::pass, retryMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+        pending.addAll(files);
+        if (files.size() < maxFilesPerScan) {
+            // A capped scan may have left files out, which must not count as covered yet.
+            scanned = true;
+        }
+        if (files.isEmpty()) {
+            log.info("event=es_vector_backfill_idle");
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        int failed = 0;
+        long docs = 0;
+        for (String fileId : files) {
+            try {
+                docs += backfill(fileId);
+                done.add(fileId);
+                pending.remove(fileId);
+            } catch (IOException | RuntimeException e) {
+                failed++;
+                log.warn("event=es_vector_backfill_file_failed fileId={} msg={}", fileId, e.getMessage());
+            }
+        }
+        log.info("event=es_vector_backfill_pass files={} failed={} docs={} ms={}",
+                files.size(), failed, docs, (System.nanoTime() - t0) / 1_000_000);
+        if (failed > 0 || files.size() >= maxFilesPerScan) {
+            scheduler.schedule(this::pass, failed > 0 ? retryMs : 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * fileIds with at least one document lacking {@code embedding}, skipping files already backfilled.
+     */
+    private List<String> scan() throws IOException {
+        SearchResponse<Void> response = indexManager.withIndex(() -> client.search(s -> s
+                        .index(indexManager.indexName())
+                        .size(0)
+                        .trackTotalHits(t -> t.enabled(false))
+                        .query(q -> q.bool(b -> {
+                            b.mustNot(m -> m.exists(e -> e.field(EMBEDDING)));
+                            if (!done.isEmpty()) {
+                                b.mustNot(m -> m.terms(t -> t.field("fileId").terms(v -> v.value(
+                                        done.stream().map(FieldValue::of).toList()))));
+                            }
+                            return b;
+                        }))
+                        .aggregations("files", a -> a.terms(t -> t.field("fileId").size(maxFilesPerScan))),
+                Void.class
+        ));
+        List<String> files = new ArrayList<>();
+        for (StringTermsBucket bucket : response.aggregations().get("files").sterms().buckets().array()) {
+            files.add(bucket.key().stringValue());
+        }
+        if (!files.isEmpty()) {
+            log.info("event=es_vector_backfill_scan files={}", files.size());
+        }
+        return files;
+    }
+
+    /**
+     * Pages through the file's pgvector rows in id order and sets {@code embedding} on the matching documents.
+     *
+     * @return documents updated
+     */
+    private long backfill(String fileId) throws IOException {
+        long t0 = System.nanoTime();
+        long updated = 0;
+        long missing = 0;
+        UUID after = MIN_UUID;
+        while (true) {
+            UUID cursor = after;
+            List<UUID> ids = new ArrayList<>(batchSize);
+            List<float[]> vectors = new ArrayList<>(batchSize);
+            jdbcTemplate.query(pageSql, ps -> {
+                ps.setString(1, fileId);
+                ps.setObject(2, cursor);
+                ps.setInt(3, batchSize);
+            }, rs -> {
+                ids.add(rs.getObject("id", UUID.class));
+                vectors.add(PgVectors.decode(rs.getBytes("embedding_bin")));
+            });
+            List<BulkOperation> ops = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i).toString();
+                float[] vector = vectors.get(i);
+                if (vector != null) {
+                    ops.add(BulkOperation.of(op -> op.update(u -> u.id(id).action(a -> a.doc(Map.of(EMBEDDING, vector))))));
+                }
+            }
+            if (!ops.isEmpty()) {
+                BulkResponse response = client.bulk(b -> b.index(indexManager.indexName()).routing(fileId).operations(ops));
+                for (BulkResponseItem item : response.items()) {
+                    if (item.error() == null) {
+                        updated++;
+                    } else if ("document_missing_exception".equals(item.error().type())) {
+                        missing++; // the chunk never made it to Elasticsearch; nothing to attach the vector to
+                    } else {
+                        throw new IllegalStateException("Bulk update of " + item.id() + " failed: " + item.error().reason());
+                    }
+                }
+            }
+            if (ids.size() < batchSize) {
+                break;
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        // kNN only sees refreshed documents; the file switches to the kNN path once they are visible.
+        client.indices().refresh(r -> r.index(indexManager.indexName()));
+        log.info("event=es_vector_backfill_file fileId={} updated={} missing={} ms={}",
+                fileId, updated, missing, (System.nanoTime() - t0) / 1_000_000);
+        return updated;
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.hybridrag.infrastructure.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index over the chunks of one file for {@link HotLexicalIndex}. Postings are primitive ints: term t's
+ * documents are {@code docs[start[t] .. start[t+1])} with matching term frequencies in {@code freqs}. Scoring is
+ * Lucene's BM25 (k1 = 1.2, b = 0.75) with statistics of this file only. Immutable once built.
+ */
+final class FileTermIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final long DOC_OVERHEAD_BYTES = 256;
+    private static final long TERM_OVERHEAD_BYTES = 64;
+
+    record Hit(int doc, float score) {
+    }
+
+    private final UUID[] ids;
+    private final String[] contents;
+    private final List<Map<String, Object>> metadata;
+    private final Map<String, Integer> terms;
+    private final int[] start;
+    private final int[] docs;
+    private final int[] freqs;
+    private final int[] docLength;
+    private final double avgDocLength;
+    private final long bytes;
+
+    FileTermIndex(List<UUID> ids, List<String> contents, List<Map<String, Object>> metadata) {
+        int n = ids.size();
+        this.ids = ids.toArray(new UUID[0]);
+        this.contents = contents.toArray(new String[0]);
+        this.metadata = List.copyOf(metadata);
+        this.terms = new HashMap<>();
+        this.docLength = new int[n];
+
+        // Pass 1: per-document (term id, tf) pairs and document frequencies; counts is scratch indexed by term id.
+        List<int[]> docTerms = new ArrayList<>(n);
+        int[] df = new int[256];
+        int[] counts = new int[256];
+        int[] touched = new int[64];
+        List<String> tokens = new ArrayList<>();
+        long totalLength = 0;
+        for (int d = 0; d < n; d++) {
+            tokens.clear();
+            tokenize(this.contents[d], tokens::add);
+            int distinct = 0;
+            for (String token : tokens) {
+                int t = terms.computeIfAbsent(token, key -> terms.size());
+                if (t >= counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(t + 1, counts.length * 2));
+                    df = Arrays.copyOf(df, counts.length);
+                }
+                if (counts[t]++ == 0) {
+                    if (distinct == touched.length) {
+                        touched = Arrays.copyOf(touched, distinct * 2);
+                    }
+                    touched[distinct++] = t;
+                }
+            }
+            int[] pairs = new int[distinct * 2];
+            for (int i = 0; i < distinct; i++) {
+                int t = touched[i];
+                df[t]++;
+                pairs[2 * i] = t;
+                pairs[2 * i + 1] = counts[t];
+                counts[t] = 0;
+            }
+            docTerms.add(pairs);
+            docLength[d] = tokens.size();
+            totalLength += tokens.size();
+        }
+        this.avgDocLength = n == 0 ? 0.0 : (double) totalLength / n;
+
+        // Pass 2: lay postings out contiguously per term, documents in ascending order.
+        int termCount = terms.size();
+        this.start = new int[termCount + 1];
+        for (int t = 0; t < termCount; t++) {
+            start[t + 1] = start[t] + df[t];
+        }
+        this.docs = new int[start[termCount]];
+        this.freqs = new int[start[termCount]];
+        int[] fill = Arrays.copyOf(start, termCount);
+        for (int d = 0; d < n; d++) {
+            int[] pairs = docTerms.get(d);
+            for (int i = 0; i < pairs.length; i += 2) {
+                int p = fill[pairs[i]]++;
+                docs[p] = d;
+                freqs[p] = pairs[i + 1];
+            }
+        }
+
+        long termBytes = 0;
+        for (String term : terms.keySet()) {
+            termBytes += 2L * term.length() + TERM_OVERHEAD_BYTES;
+        }
+        long contentBytes = 0;
+        for (String c : this.contents) {
+            contentBytes += c == null ? 0 : 2L * c.length();
+        }
+        this.bytes = 2L * Integer.BYTES * docs.length
+                + (long) Integer.BYTES * (start.length + docLength.length)
+                + termBytes
+                + contentBytes
+                + (long) n * DOC_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Any-term match (like an Elasticsearch {@code match} query), top {@code k} by BM25.
+     */
+    List<Hit> search(String query, int k) {
+        int n = ids.length;
+        if (n == 0 || k <= 0) {
+            return List.of();
+        }
+        Set<String> queryTerms = new LinkedHashSet<>();
+        tokenize(query, queryTerms::add);
+
+        float[] scores = new float[n];
+        boolean matched = false;
+        for (String term : queryTerms) {
+            Integer t = terms.get(term);
+            if (t == null) {
+                continue;
+            }
+            matched = true;
+            int from = start[t];
+            int to = start[t + 1];
+            int df = to - from;
+            double idf = Math.log(1.0 + (n - df + 0.5) / (df + 0.5));
+            for (int p = from; p < to; p++) {
+                int d = docs[p];
+                double f = freqs[p];
+                double norm = K1 * (1.0 - B + B * docLength[d] / avgDocLength);
+                scores[d] += (float) (idf * f * (K1 + 1.0) / (f + norm));
+            }
+        }
+        if (!matched) {
+            return List.of();
+        }
+
+        // Bounded min-heap of doc ids, ordered by score.
+        int[] heap = new int[Math.min(k, n)];
+        int size = 0;
+        for (int d = 0; d < n; d++) {
+            float s = scores[d];
+            if (s <= 0f) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = d;
+                siftUp(heap, size++, scores);
+            } else if (s > scores[heap[0]]) {
+                heap[0] = d;
+                siftDown(heap, size, scores);
+            }
+        }
+        Hit[] out = new Hit[size];
+        for (int i = size - 1; i >= 0; i--) {
+            int d = heap[0];
+            out[i] = new Hit(d, scores[d]);
+            heap[0] = heap[i];
+            siftDown(heap, i, scores);
+        }
+        return Arrays.asList(out);
+    }
+
+    /**
+     * Roughly Elasticsearch's standard analyzer: runs of letters/digits, lower-cased.
+     */
+    static void tokenize(String text, Consumer<String> sink) {
+        if (text == null) {
+            return;
+        }
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            int from = i;
+            while (i < len) {
+                cp = text.codePointAt(i);
+                if (!Character.isLetterOrDigit(cp) && Character.getType(cp) != Character.NON_SPACING_MARK) {
+                    break;
+                }
+                i += Character.charCount(cp);
+            }
+            sink.accept(text.substring(from, i).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static void siftUp(int[] heap, int i, float[] scores) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[heap[parent]] <= scores[heap[i]]) {
+                return;
+            }
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int min = left + 1 < size && scores[heap[left + 1]] < scores[heap[left]] ? left + 1 : left;
+            if (scores[heap[i]] <= scores[heap[min]]) {
+                return;
+            }
+            swap(heap, i, min);
+            i = min;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    UUID id(int doc) {
+        return ids[doc];
+    }
+
+    String content(int doc) {
+        return contents[doc];
+    }
+
+    Map<String, Object> metadata(int doc) {
+        return metadata.get(doc);
+    }
+
+    long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.hybridrag.infrastructure.search;
+
+import com.example.hybridrag.infrastructure.ingest.FileChunksChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-JVM BM25 index for recently ingested files, in front of Elasticsearch.
+ * <p>
+ * {@link com.example.hybridrag.infrastructure.ingest.IngestService} hands over the chunks it just wrote, so a file is
+ * searchable here immediately (no HTTP hop, no wait for an Elasticsearch refresh). Whole files are kept in an LRU
+ * bounded by {@code hybridrag.lexical-index.max-bytes} and dropped when their chunks change. A query for a file that
+ * is not resident returns empty and the caller falls back to Elasticsearch.
+ * <p>
+ * Statistics (idf, average length) are per file rather than per shard, so absolute scores differ from
+ * Elasticsearch; fusion normalizes each leg per query, so only the order within the file matters.
+ */
+@Component
+public class HotLexicalIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(HotLexicalIndex.class);
+
+    private final boolean enabled;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, FileTermIndex> resident = new LinkedHashMap<>(64, 0.75f, true);
+    private long residentBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public HotLexicalIndex(
+            MeterRegistry meterRegistry,
+            @Value("${hybridrag.lexical-index.enabled}") boolean enabled,
+            @Value("${hybridrag.lexical-index.max-bytes}") long maxBytes
+    ) {
+        this.enabled = enabled;
+        this.maxBytes = Math.max(1, maxBytes);
+
+        this.hits = Counter.builder("hybridrag.lexical.index.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hybridrag.lexical.index.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("hybridrag.lexical.index.files", this, c -> c.residentFiles());
+        meterRegistry.gauge("hybridrag.lexical.index.bytes", this, c -> c.residentBytes());
+
+        log.info("event=lexical_index_config enabled={} maxBytes={}", enabled, this.maxBytes);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Indexes a freshly written file, evicting least recently used files past the budget.
+     */
+    public void put(String fileId, List<UUID> ids, List<String> contents, List<Map<String, Object>> metadata) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        FileTermIndex index = new FileTermIndex(ids, contents, metadata);
+        if (index.bytes() > maxBytes) {
+            log.info("event=lexical_index_skip fileId={} chunks={} reason=over_budget", fileId, ids.size());
+            return;
+        }
+        int evicted = 0;
+        synchronized (resident) {
+            FileTermIndex previous = resident.put(fileId, index);
+            if (previous != null) {
+                residentBytes -= previous.bytes();
+            }
+            residentBytes += index.bytes();
+            Iterator<Map.Entry<String, FileTermIndex>> it = resident.entrySet().iterator();
+            while (residentBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, FileTermIndex> eldest = it.next();
+                if (eldest.getKey().equals(fileId)) {
+                    continue;
+                }
+                residentBytes -= eldest.getValue().bytes();
+                it.remove();
+                evicted++;
+            }
+        }
+        log.info("event=lexical_index_loaded fileId={} chunks={} bytes={} evicted={} ms={}",
+                fileId, index.size(), index.bytes(), evicted, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /**
+     * @return BM25 hits, or empty when the file is not resident
+     */
+    public Optional<List<ElasticsearchService.EsHit>> search(String fileId, String query, int topK) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        FileTermIndex index;
+        synchronized (resident) {
+            index = resident.get(fileId);
+        }
+        if (index == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+
+        List<FileTermIndex.Hit> found = index.search(query, topK);
+        List<ElasticsearchService.EsHit> out = new ArrayList<>(found.size());
+        for (FileTermIndex.Hit h : found) {
+            out.add(new ElasticsearchService.EsHit(
+                    index.id(h.doc()), fileId, index.content(h.doc()), index.metadata(h.doc()), h.score()));
+        }
+        log.info("event=lexical_index_search fileId={} topK={} returned={}", fileId, topK, out.size());
+        return Optional.of(out);
+    }
+
+    @EventListener
+    public void onFileChunksChanged(FileChunksChangedEvent event) {
+        // WRITTEN is published before IngestService hands the new chunks over, so dropping here is always safe.
+        synchronized (resident) {
+            FileTermIndex removed = resident.remove(event.fileId());
+            if (removed != null) {
+                residentBytes -= removed.bytes();
+            }
+        }
+    }
+
+    private int residentFiles() {
+        synchronized (resident) {
+            return resident.size();
+        }
+    }
+
+    private long residentBytes() {
+        synchronized (resident) {
+            return residentBytes;
+        }
+    }
+}
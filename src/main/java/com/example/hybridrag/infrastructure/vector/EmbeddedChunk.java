@@ -0,0 +1,7 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.util.Map;
+import java.util.UUID;
+
+public record EmbeddedChunk(UUID id, String content, Map<String, Object> metadata, float[] embedding) {
+}
@@ -0,0 +1,143 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * The chunks of one file held in memory for {@link HotVectorIndex}: ids/content/metadata on heap, unit-length
+ * embeddings in one contiguous direct (off-heap) float buffer, row-major. Immutable once built.
+ */
+final class FileVectorSet implements HnswGraph.Rows {
+
+    private static final long ROW_OVERHEAD_BYTES = 64;
+
+    record Hit(int row, float similarity) {
+    }
+
+    private final int dims;
+    private final UUID[] ids;
+    private final String[] contents;
+    private final List<Map<String, Object>> metadata;
+    private final FloatBuffer vectors;
+    private final HnswGraph graph;
+    private final long bytes;
+
+    /**
+     * @param hnswMinRows build an HNSW graph when the file has at least this many rows, brute force below
+     */
+    FileVectorSet(List<UUID> ids, List<String> contents, List<Map<String, Object>> metadata, List<float[]> embeddings,
+                  int dims, int hnswMinRows, int hnswM, int hnswEfConstruction) {
+        int n = ids.size();
+        this.dims = dims;
+        this.ids = ids.toArray(new UUID[0]);
+        this.contents = contents.toArray(new String[0]);
+        this.metadata = List.copyOf(metadata);
+
+        float[] matrix = new float[n * dims];
+        for (int i = 0; i < n; i++) {
+            VectorMath.normalizeInto(embeddings.get(i), matrix, i * dims);
+        }
+        this.vectors = ByteBuffer.allocateDirect(n * dims * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        vectors.put(0, matrix);
+
+        // The graph is built against the on-heap copy, where dots take the SIMD kernel; searches read the off-heap rows.
+        this.graph = n >= hnswMinRows ? HnswGraph.build(new HeapRows(matrix, n, dims), hnswM, hnswEfConstruction) : null;
+
+        long contentBytes = 0;
+        for (String c : this.contents) {
+            contentBytes += c == null ? 0 : 2L * c.length();
+        }
+        this.bytes = (long) n * dims * Float.BYTES
+                + (long) n * ROW_OVERHEAD_BYTES
+                + contentBytes
+                + (graph == null ? 0 : graph.bytes());
+    }
+
+    private record HeapRows(float[] matrix, int size, int dims) implements HnswGraph.Rows {
+        @Override
+        public void copyRow(int row, float[] dst) {
+            System.arraycopy(matrix, row * dims, dst, 0, dims);
+        }
+
+        @Override
+        public float dot(float[] query, int row) {
+            return VectorMath.dot(query, 0, matrix, row * dims, dims);
+        }
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public int dims() {
+        return dims;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    boolean indexed() {
+        return graph != null;
+    }
+
+    UUID id(int row) {
+        return ids[row];
+    }
+
+    String content(int row) {
+        return contents[row];
+    }
+
+    Map<String, Object> metadata(int row) {
+        return metadata.get(row);
+    }
+
+    @Override
+    public void copyRow(int row, float[] dst) {
+        vectors.get(row * dims, dst, 0, dims);
+    }
+
+    /**
+     * Reads the row in place from the off-heap buffer (no per-row copy).
+     */
+    @Override
+    public float dot(float[] query, int row) {
+        return VectorMath.dot(query, 0, vectors, row * dims, dims);
+    }
+
+    /**
+     * @param query unit-length query vector
+     * @return up to {@code k} rows, most similar first; none for {@code k <= 0}
+     */
+    List<Hit> search(float[] query, int k, int efSearch) {
+        if (k <= 0) {
+            return List.of();
+        }
+        if (graph != null) {
+            return graph.search(this, query, k, Math.max(k, efSearch));
+        }
+        PriorityQueue<Hit> top = new PriorityQueue<>(k + 1, Comparator.comparingDouble(Hit::similarity));
+        for (int i = 0; i < ids.length; i++) {
+            float sim = dot(query, i);
+            if (top.size() < k) {
+                top.add(new Hit(i, sim));
+            } else if (sim > top.peek().similarity()) {
+                top.poll();
+                top.add(new Hit(i, sim));
+            }
+        }
+        List<Hit> out = new ArrayList<>(top);
+        out.sort(Comparator.comparingDouble(Hit::similarity).reversed());
+        return out;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * HNSW graph (Malkov &amp; Yashunin) over unit-length rows; similarity is the dot product. Neighbours are chosen
+ * with the paper's diversity heuristic (a candidate is skipped when it is closer to an already chosen neighbour
+ * than to the new node), which keeps clustered data connected. Built once, single-threaded, and read-only
+ * afterwards, so concurrent searches need no locking.
+ */
+final class HnswGraph {
+
+    /**
+     * Row access; the graph only stores row numbers.
+     */
+    interface Rows {
+        int size();
+
+        int dims();
+
+        void copyRow(int row, float[] dst);
+
+        float dot(float[] query, int row);
+    }
+
+    private static final Comparator<FileVectorSet.Hit> BY_SIM = Comparator.comparingDouble(FileVectorSet.Hit::similarity);
+
+    private final int m;
+    private final int m0;
+    private final int[][][] links; // node -> level -> neighbour rows
+    private int entry = -1;
+    private int maxLevel = -1;
+
+    private HnswGraph(int size, int m) {
+        this.m = m;
+        this.m0 = 2 * m;
+        this.links = new int[size][][];
+    }
+
+    static HnswGraph build(Rows rows, int m, int efConstruction) {
+        HnswGraph g = new HnswGraph(rows.size(), Math.max(2, m));
+        SplittableRandom random = new SplittableRandom(rows.size());
+        double levelMult = 1.0 / Math.log(g.m);
+        Builder b = new Builder(rows, Math.max(g.m, efConstruction));
+        for (int i = 0; i < rows.size(); i++) {
+            int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMult);
+            rows.copyRow(i, b.q);
+            g.insert(b, i, level);
+        }
+        return g;
+    }
+
+    long bytes() {
+        long total = 0;
+        for (int[][] node : links) {
+            total += 16;
+            for (int[] level : node) {
+                total += 16 + 4L * level.length;
+            }
+        }
+        return total;
+    }
+
+    List<FileVectorSet.Hit> search(Rows rows, float[] query, int k, int ef) {
+        if (entry < 0) {
+            return List.of();
+        }
+        FileVectorSet.Hit ep = new FileVectorSet.Hit(entry, rows.dot(query, entry));
+        for (int level = maxLevel; level > 0; level--) {
+            ep = greedy(rows, query, ep, level);
+        }
+        List<FileVectorSet.Hit> found = searchLayer(rows, query, ep, ef, 0);
+        return found.size() > k ? found.subList(0, k) : found;
+    }
+
+    private static final class Builder {
+        final Rows rows;
+        final int efConstruction;
+        final float[] q;
+        final float[] base;
+
+        Builder(Rows rows, int efConstruction) {
+            this.rows = rows;
+            this.efConstruction = efConstruction;
+            this.q = new float[rows.dims()];
+            this.base = new float[rows.dims()];
+        }
+    }
+
+    private void insert(Builder b, int node, int level) {
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], new int[0]);
+        if (entry < 0) {
+            entry = node;
+            maxLevel = level;
+            return;
+        }
+
+        FileVectorSet.Hit ep = new FileVectorSet.Hit(entry, b.rows.dot(b.q, entry));
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedy(b.rows, b.q, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<FileVectorSet.Hit> candidates = searchLayer(b.rows, b.q, ep, b.efConstruction, l);
+            int[] neighbours = selectNeighbours(b, candidates, m);
+            links[node][l] = neighbours;
+            int cap = l == 0 ? m0 : m;
+            for (int nb : neighbours) {
+                connect(b, nb, node, l, cap);
+            }
+            ep = candidates.get(0);
+        }
+        if (level > maxLevel) {
+            entry = node;
+            maxLevel = level;
+        }
+    }
+
+    private void connect(Builder b, int from, int to, int level, int cap) {
+        int[] current = links[from][level];
+        if (current.length < cap) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = to;
+            links[from][level] = grown;
+            return;
+        }
+        // Over capacity: re-select from's neighbours among the old ones plus the new node.
+        b.rows.copyRow(from, b.base);
+        List<FileVectorSet.Hit> scored = new ArrayList<>(current.length + 1);
+        for (int nb : current) {
+            scored.add(new FileVectorSet.Hit(nb, b.rows.dot(b.base, nb)));
+        }
+        scored.add(new FileVectorSet.Hit(to, b.rows.dot(b.base, to)));
+        scored.sort(BY_SIM.reversed());
+        links[from][level] = selectNeighbours(b, scored, cap);
+    }
+
+    /**
+     * @param candidates sorted by similarity to the base node, best first
+     */
+    private static int[] selectNeighbours(Builder b, List<FileVectorSet.Hit> candidates, int max) {
+        int[] chosen = new int[Math.min(max, candidates.size())];
+        int n = 0;
+        float[] cand = new float[b.rows.dims()];
+        BitSet skipped = new BitSet(candidates.size());
+        for (int i = 0; i < candidates.size() && n < chosen.length; i++) {
+            FileVectorSet.Hit c = candidates.get(i);
+            b.rows.copyRow(c.row(), cand);
+            boolean diverse = true;
+            for (int j = 0; j < n; j++) {
+                if (b.rows.dot(cand, chosen[j]) > c.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                chosen[n++] = c.row();
+            } else {
+                skipped.set(i);
+            }
+        }
+        // Keep the degree up with the closest skipped candidates.
+        for (int i = skipped.nextSetBit(0); i >= 0 && n < chosen.length; i = skipped.nextSetBit(i + 1)) {
+            chosen[n++] = candidates.get(i).row();
+        }
+        return n == chosen.length ? chosen : Arrays.copyOf(chosen, n);
+    }
+
+    private FileVectorSet.Hit greedy(Rows rows, float[] q, FileVectorSet.Hit ep, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int nb : neighbours(ep.row(), level)) {
+                float sim = rows.dot(q, nb);
+                if (sim > ep.similarity()) {
+                    ep = new FileVectorSet.Hit(nb, sim);
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Best-first search of one layer; returns up to {@code ef} rows, most similar first.
+     */
+    private List<FileVectorSet.Hit> searchLayer(Rows rows, float[] q, FileVectorSet.Hit ep, int ef, int level) {
+        BitSet visited = new BitSet(links.length);
+        visited.set(ep.row());
+        PriorityQueue<FileVectorSet.Hit> candidates = new PriorityQueue<>(BY_SIM.reversed());
+        PriorityQueue<FileVectorSet.Hit> results = new PriorityQueue<>(ef + 1, BY_SIM);
+        candidates.add(ep);
+        results.add(ep);
+
+        while (!candidates.isEmpty()) {
+            FileVectorSet.Hit c = candidates.poll();
+            if (results.size() >= ef && c.similarity() < results.peek().similarity()) {
+                break;
+            }
+            for (int nb : neighbours(c.row(), level)) {
+                if (visited.get(nb)) {
+                    continue;
+                }
+                visited.set(nb);
+                float sim = rows.dot(q, nb);
+                if (results.size() < ef || sim > results.peek().similarity()) {
+                    FileVectorSet.Hit h = new FileVectorSet.Hit(nb, sim);
+                    candidates.add(h);
+                    results.add(h);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<FileVectorSet.Hit> out = new ArrayList<>(results);
+        out.sort(BY_SIM.reversed());
+        return out;
+    }
+
+    private int[] neighbours(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return level < nodeLinks.length ? nodeLinks[level] : new int[0];
+    }
+}
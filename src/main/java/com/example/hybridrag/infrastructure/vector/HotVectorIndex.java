@@ -0,0 +1,292 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.example.hybridrag.application.service.ScoredChunk;
+import com.example.hybridrag.infrastructure.ingest.FileChunksChangedEvent;
+import com.example.hybridrag.infrastructure.ingest.FileGenerations;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-JVM vector index for recently used files, in front of pgvector.
+ * <p>
+ * Whole files are loaded (after ingest and/or on the first query that misses) on a background thread and kept in
+ * an LRU bounded by {@code hybridrag.hot-index.max-bytes}. Small files are searched exactly by brute force; files
+ * with at least {@code hnsw-min-chunks} chunks get an HNSW graph. A query for a file that is not resident returns
+ * empty and the caller falls back to Postgres. Files that loaded no rows (unknown or empty) or did not fit the
+ * budget are remembered until their chunks change, so repeated misses do not reload them. Scores match the
+ * pgvector path (1/(1+cosine distance)).
+ */
+@Component
+public class HotVectorIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(HotVectorIndex.class);
+
+    private static final int MAX_UNLOADABLE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long maxBytes;
+    private final boolean loadOnQuery;
+    private final boolean preloadOnIngest;
+    private final int hnswMinChunks;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int hnswEfSearch;
+    private final String loadSql;
+
+    private final LinkedHashMap<String, FileVectorSet> resident = new LinkedHashMap<>(64, 0.75f, true);
+    private long residentBytes;
+    // fileId -> generation at which a load found nothing to keep; guarded by resident.
+    private final LinkedHashMap<String, Long> unloadable = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_UNLOADABLE;
+        }
+    };
+    private final FileGenerations generations = new FileGenerations();
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final ExecutorService loader;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public HotVectorIndex(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.hot-index.enabled}") boolean enabled,
+            @Value("${hybridrag.hot-index.max-bytes}") long maxBytes,
+            @Value("${hybridrag.hot-index.load-on-query}") boolean loadOnQuery,
+            @Value("${hybridrag.hot-index.preload-on-ingest}") boolean preloadOnIngest,
+            @Value("${hybridrag.hot-index.hnsw.min-chunks}") int hnswMinChunks,
+            @Value("${hybridrag.hot-index.hnsw.m}") int hnswM,
+            @Value("${hybridrag.hot-index.hnsw.ef-construction}") int hnswEfConstruction,
+            @Value("${hybridrag.hot-index.hnsw.ef-search}") int hnswEfSearch
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxBytes = Math.max(1, maxBytes);
+        this.loadOnQuery = loadOnQuery;
+        this.preloadOnIngest = preloadOnIngest;
+        this.hnswMinChunks = Math.max(1, hnswMinChunks);
+        this.hnswM = Math.max(2, hnswM);
+        this.hnswEfConstruction = Math.max(1, hnswEfConstruction);
+        this.hnswEfSearch = Math.max(1, hnswEfSearch);
+        this.loadSql = "SELECT id, content, metadata::text AS metadata, vector_send(embedding) AS embedding_bin "
+                + "FROM " + schema + "." + table + " WHERE file_id = ?";
+
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "hot-index-loader");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.hits = Counter.builder("hybridrag.hot.index.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hybridrag.hot.index.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("hybridrag.hot.index.files", this, c -> c.residentFiles());
+        meterRegistry.gauge("hybridrag.hot.index.bytes", this, c -> c.residentBytes());
+
+        log.info("event=hot_index_config enabled={} maxBytes={} loadOnQuery={} preloadOnIngest={} hnswMinChunks={}",
+                enabled, this.maxBytes, loadOnQuery, preloadOnIngest, this.hnswMinChunks);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @return hits with their embeddings, or empty when the file is not resident (a background load may be started)
+     */
+    public Optional<VectorSearchService.VectorHits> search(String fileId, float[] query, int topK) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        FileVectorSet set;
+        boolean skipLoad;
+        synchronized (resident) {
+            set = resident.get(fileId);
+            Long unloadableAt = set == null ? unloadable.get(fileId) : null;
+            skipLoad = unloadableAt != null && unloadableAt == generations.current(fileId);
+        }
+        if (set == null) {
+            misses.increment();
+            if (loadOnQuery && !skipLoad) {
+                scheduleLoad(fileId);
+            }
+            return Optional.empty();
+        }
+        hits.increment();
+
+        float[] q = new float[query.length];
+        VectorMath.normalizeInto(query, q, 0);
+        List<FileVectorSet.Hit> found = set.search(q, topK, hnswEfSearch);
+
+        List<ScoredChunk> chunks = new ArrayList<>(found.size());
+        Map<UUID, float[]> embeddings = new HashMap<>(found.size() * 2);
+        for (FileVectorSet.Hit h : found) {
+            double distance = Math.max(0.0, 1.0 - h.similarity());
+            double score = Math.min(1.0, 1.0 / (1.0 + distance));
+            Map<String, Object> md = new HashMap<>(set.metadata(h.row()));
+            md.put("distance", distance);
+            UUID id = set.id(h.row());
+            chunks.add(new ScoredChunk(id, fileId, set.content(h.row()), md, score, 0.0, score));
+            float[] row = new float[set.dims()];
+            set.copyRow(h.row(), row);
+            embeddings.put(id, row);
+        }
+        log.info("event=hot_index_search fileId={} topK={} returned={} mode={}",
+                fileId, topK, chunks.size(), set.indexed() ? "hnsw" : "exact");
+        return Optional.of(new VectorSearchService.VectorHits(chunks, embeddings));
+    }
+
+    @EventListener
+    public void onFileChunksChanged(FileChunksChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        evict(event);
+        if (event.change() == FileChunksChangedEvent.Change.WRITTEN && preloadOnIngest) {
+            scheduleLoad(event.fileId());
+        }
+    }
+
+    private void evict(FileChunksChangedEvent event) {
+        synchronized (resident) {
+            generations.advance(event);
+            unloadable.remove(event.fileId());
+            FileVectorSet removed = resident.remove(event.fileId());
+            if (removed != null) {
+                residentBytes -= removed.bytes();
+            }
+        }
+    }
+
+    private void scheduleLoad(String fileId) {
+        if (!loading.add(fileId)) {
+            return;
+        }
+        long generation = generations.current(fileId);
+        try {
+            loader.execute(() -> {
+                try {
+                    load(fileId, generation);
+                } catch (RuntimeException e) {
+                    log.warn("event=hot_index_load_failed fileId={} msg={}", fileId, e.getMessage());
+                } finally {
+                    loading.remove(fileId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loading.remove(fileId);
+        }
+    }
+
+    private void load(String fileId, long generation) {
+        long t0 = System.nanoTime();
+        List<UUID> ids = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<Map<String, Object>> metadata = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        jdbcTemplate.query(loadSql, ps -> ps.setString(1, fileId), rs -> {
+            float[] v = PgVectors.decode(rs.getBytes("embedding_bin"));
+            if (v == null || (!embeddings.isEmpty() && v.length != embeddings.get(0).length)) {
+                return;
+            }
+            ids.add(rs.getObject("id", UUID.class));
+            contents.add(rs.getString("content"));
+            metadata.add(VectorSearchService.parseMetadata(objectMapper, rs.getString("metadata")));
+            embeddings.add(v);
+        });
+        if (ids.isEmpty()) {
+            markUnloadable(fileId, generation);
+            return;
+        }
+        int dims = embeddings.get(0).length;
+        long estimate = (long) ids.size() * dims * Float.BYTES;
+        if (estimate > maxBytes) {
+            log.info("event=hot_index_skip fileId={} chunks={} reason=over_budget", fileId, ids.size());
+            markUnloadable(fileId, generation);
+            return;
+        }
+
+        FileVectorSet set = new FileVectorSet(ids, contents, metadata, embeddings, dims, hnswMinChunks, hnswM, hnswEfConstruction);
+
+        int evicted = 0;
+        synchronized (resident) {
+            if (generations.current(fileId) != generation) {
+                return; // chunks changed while loading
+            }
+            if (set.bytes() > maxBytes) {
+                unloadable.put(fileId, generation); // too big once fully built
+                return;
+            }
+            FileVectorSet previous = resident.put(fileId, set);
+            if (previous != null) {
+                residentBytes -= previous.bytes();
+            }
+            residentBytes += set.bytes();
+            Iterator<Map.Entry<String, FileVectorSet>> it = resident.entrySet().iterator();
+            while (residentBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, FileVectorSet> eldest = it.next();
+                if (eldest.getKey().equals(fileId)) {
+                    continue;
+                }
+                residentBytes -= eldest.getValue().bytes();
+                it.remove();
+                evicted++;
+            }
+        }
+        log.info("event=hot_index_loaded fileId={} chunks={} mode={} bytes={} evicted={} ms={}",
+                fileId, set.size(), set.indexed() ? "hnsw" : "exact", set.bytes(), evicted,
+                (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private void markUnloadable(String fileId, long generation) {
+        synchronized (resident) {
+            // A change that raced the load already advanced the generation; the entry then never matches.
+            unloadable.put(fileId, generation);
+        }
+    }
+
+    private int residentFiles() {
+        synchronized (resident) {
+            return resident.size();
+        }
+    }
+
+    private long residentBytes() {
+        synchronized (resident) {
+            return residentBytes;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        loader.shutdownNow();
+    }
+}
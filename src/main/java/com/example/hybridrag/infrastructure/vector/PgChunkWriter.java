@@ -0,0 +1,127 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes already-embedded chunks to the pgvector table (same row layout as PgVectorStore).
+ * Lets ingest embed and write in separate, overlapping steps instead of PgVectorStore.add's embed-then-insert.
+ * <p>
+ * Write path (hybridrag.pgvector.write-mode): {@code jdbc} = batched upsert, {@code copy} = binary COPY via
+ * {@link PgCopyLoader}. Ingest writes through a {@link Session}, so in copy mode one COPY stream spans all of a
+ * file's batches instead of one COPY per (small) batch.
+ */
+@Component
+public class PgChunkWriter {
+
+    public enum WriteMode {
+        JDBC,
+        COPY
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PgCopyLoader copyLoader;
+    private final WriteMode writeMode;
+    private final String insertSql;
+    private final String deleteByFileIdSql;
+
+    public PgChunkWriter(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            PgCopyLoader copyLoader,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.pgvector.write-mode}") String writeMode
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.copyLoader = copyLoader;
+        this.writeMode = WriteMode.valueOf(writeMode.trim().toUpperCase());
+        this.insertSql = "INSERT INTO " + schema + "." + table + " (id, content, metadata, embedding) "
+                + "VALUES (?, ?, ?::jsonb, ?) "
+                + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, "
+                + "embedding = EXCLUDED.embedding";
+        this.deleteByFileIdSql = "DELETE FROM " + schema + "." + table + " WHERE file_id = ?";
+    }
+
+    public void write(List<EmbeddedChunk> chunks) {
+        if (chunks == null || chunks.isEmpty()) {
+            return;
+        }
+        if (writeMode == WriteMode.COPY) {
+            copyLoader.copy(chunks);
+            return;
+        }
+        upsert(chunks);
+    }
+
+    /**
+     * Writer for one file's batches; {@link Session#finish} makes the last rows durable, {@link Session#abort}
+     * drops what is not committed yet. Calls must not overlap.
+     */
+    public Session open() {
+        return new Session(writeMode == WriteMode.COPY ? copyLoader.open() : null);
+    }
+
+    public final class Session {
+
+        private final PgCopyLoader.CopyStream copy;
+
+        private Session(PgCopyLoader.CopyStream copy) {
+            this.copy = copy;
+        }
+
+        public void write(List<EmbeddedChunk> chunks) {
+            if (chunks == null || chunks.isEmpty()) {
+                return;
+            }
+            if (copy != null) {
+                copy.write(chunks);
+            } else {
+                upsert(chunks);
+            }
+        }
+
+        public void finish() {
+            if (copy != null) {
+                copy.finish();
+            }
+        }
+
+        public void abort() {
+            if (copy != null) {
+                copy.abort();
+            }
+        }
+    }
+
+    private void upsert(List<EmbeddedChunk> chunks) {
+        jdbcTemplate.batchUpdate(insertSql, chunks, chunks.size(), (ps, c) -> {
+            ps.setObject(1, c.id());
+            ps.setString(2, c.content());
+            ps.setString(3, toJson(c));
+            ps.setObject(4, new PGvector(c.embedding()));
+        });
+    }
+
+    /**
+     * @return number of rows deleted
+     */
+    public int deleteByFileId(String fileId) {
+        return jdbcTemplate.update(deleteByFileIdSql, fileId);
+    }
+
+    private String toJson(EmbeddedChunk c) {
+        try {
+            return objectMapper.writeValueAsString(c.metadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Chunk metadata is not serializable: " + c.id(), e);
+        }
+    }
+}
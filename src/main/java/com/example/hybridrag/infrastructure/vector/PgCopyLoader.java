@@ -0,0 +1,230 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bulk loader for the pgvector table using {@code COPY ... FROM STDIN (FORMAT binary)}.
+ * <p>
+ * Rows carry id (uuid), content (text), metadata (jsonb) and embedding (pgvector binary: int16 dim,
+ * int16 unused, dim x float4). The generated file_id and the defaulted created_at columns are left to Postgres.
+ * COPY has no ON CONFLICT, so this path is only for freshly generated chunk ids.
+ * <p>
+ * Ingest writes in small pipeline batches; {@link #open()} keeps one COPY open across them and commits it every
+ * {@code rows-per-copy} rows, so the per-statement setup is paid per few thousand rows, not per batch.
+ */
+@Component
+public class PgCopyLoader {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int JSONB_VERSION = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String copySql;
+    private final int rowsPerCopy;
+
+    public PgCopyLoader(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.pgvector.copy.rows-per-copy}") int rowsPerCopy
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.copySql = "COPY " + schema + "." + table + " (id, content, metadata, embedding) FROM STDIN (FORMAT binary)";
+        this.rowsPerCopy = Math.max(1, rowsPerCopy);
+    }
+
+    /**
+     * @return number of rows copied
+     */
+    public long copy(List<EmbeddedChunk> chunks) {
+        if (chunks == null || chunks.isEmpty()) {
+            return 0;
+        }
+        CopyStream stream = open();
+        try {
+            stream.write(chunks);
+            return stream.finish();
+        } finally {
+            stream.abort();
+        }
+    }
+
+    /**
+     * Opens a COPY stream on its own pooled connection, held until {@link CopyStream#finish} or
+     * {@link CopyStream#abort}. Calls must not overlap, but may come from different threads in turn.
+     */
+    public CopyStream open() {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        if (dataSource == null) {
+            throw new IllegalStateException("JdbcTemplate has no DataSource");
+        }
+        try {
+            return new CopyStream(dataSource.getConnection());
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Could not open a connection for COPY", e);
+        }
+    }
+
+    /**
+     * Rows written since the last commit are only visible (and only survive) once their COPY ends: every
+     * {@code rows-per-copy} rows and on {@link #finish}. {@link #abort} discards the open COPY.
+     */
+    public final class CopyStream {
+
+        private final Connection con;
+        private PGCopyOutputStream copy;
+        private DataOutputStream out;
+        private int rowsInCopy;
+        private long committed;
+        private boolean closed;
+
+        private CopyStream(Connection con) {
+            this.con = con;
+        }
+
+        public void write(List<EmbeddedChunk> rows) {
+            if (closed) {
+                throw new IllegalStateException("COPY stream is closed");
+            }
+            try {
+                for (EmbeddedChunk c : rows) {
+                    if (copy == null) {
+                        begin();
+                    }
+                    writeRow(out, c);
+                    if (++rowsInCopy >= rowsPerCopy) {
+                        end();
+                    }
+                }
+            } catch (IOException | SQLException e) {
+                abort();
+                throw new DataAccessResourceFailureException("COPY into pgvector table failed", e);
+            } catch (RuntimeException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /**
+         * Commits the open COPY and releases the connection.
+         *
+         * @return rows committed by this stream
+         */
+        public long finish() {
+            if (closed) {
+                throw new IllegalStateException("COPY stream is closed");
+            }
+            try {
+                end();
+            } catch (IOException | SQLException e) {
+                abort();
+                throw new DataAccessResourceFailureException("COPY into pgvector table failed", e);
+            }
+            release();
+            return committed;
+        }
+
+        /**
+         * Discards the open COPY (rows of earlier, ended COPYs stay) and releases the connection. Idempotent.
+         */
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            if (copy != null) {
+                cancel(copy);
+                copy = null;
+            }
+            release();
+        }
+
+        private void begin() throws SQLException, IOException {
+            copy = new PGCopyOutputStream(con.unwrap(PGConnection.class), copySql, 64 * 1024);
+            out = new DataOutputStream(copy);
+            out.write(SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+            rowsInCopy = 0;
+        }
+
+        private void end() throws IOException, SQLException {
+            if (copy == null) {
+                return;
+            }
+            out.writeShort(-1);
+            out.flush();
+            committed += copy.endCopy();
+            copy = null;
+            out = null;
+        }
+
+        private void release() {
+            closed = true;
+            try {
+                con.close();
+            } catch (SQLException ignored) {
+                // the pool validates the connection on its next checkout
+            }
+        }
+    }
+
+    private void writeRow(DataOutputStream out, EmbeddedChunk c) throws IOException {
+        out.writeShort(4);
+
+        out.writeInt(16);
+        out.writeLong(c.id().getMostSignificantBits());
+        out.writeLong(c.id().getLeastSignificantBits());
+
+        byte[] content = c.content().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(content.length);
+        out.write(content);
+
+        byte[] json = toJson(c);
+        out.writeInt(json.length + 1);
+        out.writeByte(JSONB_VERSION);
+        out.write(json);
+
+        float[] v = c.embedding();
+        out.writeInt(4 + v.length * Float.BYTES);
+        out.writeShort(v.length);
+        out.writeShort(0);
+        for (float f : v) {
+            out.writeFloat(f);
+        }
+    }
+
+    private byte[] toJson(EmbeddedChunk c) {
+        try {
+            return objectMapper.writeValueAsBytes(c.metadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Chunk metadata is not serializable: " + c.id(), e);
+        }
+    }
+
+    private static void cancel(PGCopyOutputStream copy) {
+        try {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        } catch (SQLException ignored) {
+            // connection is returned to the pool and validated there
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.example.hybridrag.infrastructure.config.RetrievalBackend;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Online migration of the HNSW index to the configured {@link VectorStorageMode}.
+ * <p>
+ * After startup, on a background thread, the mode's index is built with {@code CREATE INDEX CONCURRENTLY} (reads
+ * and ingest keep running); an INVALID leftover from an interrupted build is dropped and rebuilt. Until the index is
+ * valid, searches keep using the full-precision index ({@link #effectiveMode()}). With
+ * {@code drop-other-indexes}, the other modes' HNSW indexes are dropped concurrently once the new one is valid,
+ * which is what actually frees the memory.
+ * <p>
+ * With the {@code postgres} retrieval backend the full-text GIN index on {@code content_tsv} is ensured the same way.
+ * The generated column itself is not added here: that rewrites the table under an exclusive lock, so it is left to
+ * docker/init.sql or an operator.
+ */
+@Component
+public class PgVectorIndexMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(PgVectorIndexMigrator.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStorageMode mode;
+    private final RetrievalBackend backend;
+    private final String schema;
+    private final String table;
+    private final int dimensions;
+    private final boolean dropOtherIndexes;
+    private final ExecutorService worker;
+
+    private volatile boolean ready;
+
+    public PgVectorIndexMigrator(
+            JdbcTemplate jdbcTemplate,
+            VectorStorageMode mode,
+            RetrievalBackend backend,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.pgvector.dimensions}") int dimensions,
+            @Value("${hybridrag.pgvector.storage.drop-other-indexes}") boolean dropOtherIndexes
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mode = mode;
+        this.backend = backend;
+        this.schema = schema;
+        this.table = table;
+        this.dimensions = dimensions;
+        this.dropOtherIndexes = dropOtherIndexes;
+        this.ready = mode == VectorStorageMode.VECTOR;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pgvector-index-migrator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * The configured mode once its index is valid, {@link VectorStorageMode#VECTOR} until then.
+     */
+    public VectorStorageMode effectiveMode() {
+        return ready ? mode : VectorStorageMode.VECTOR;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        worker.execute(() -> {
+            if (backend == RetrievalBackend.POSTGRES) {
+                ensureFullTextIndex();
+            }
+            try {
+                ensureIndex(mode.indexName(table), mode.indexDefinition(dimensions), mode.name());
+                ready = true;
+                if (dropOtherIndexes) {
+                    for (VectorStorageMode other : VectorStorageMode.values()) {
+                        if (other != mode) {
+                            drop(other.indexName(table));
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("event=pgvector_index_migration_failed mode={} msg={}", mode, e.getMessage(), e);
+            }
+        });
+    }
+
+    private void ensureFullTextIndex() {
+        try {
+            Integer columns = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM information_schema.columns "
+                            + "WHERE table_schema = ? AND table_name = ? AND column_name = 'content_tsv'",
+                    Integer.class, schema, table);
+            if (columns == null || columns == 0) {
+                log.error("event=fulltext_column_missing table={}.{} hint=\"ALTER TABLE {}.{} ADD COLUMN content_tsv "
+                                + "tsvector GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED\"",
+                        schema, table, schema, table);
+                return;
+            }
+            ensureIndex("idx_" + table + "_content_tsv", "gin (content_tsv)", "FULLTEXT");
+        } catch (RuntimeException e) {
+            log.error("event=fulltext_index_migration_failed msg={}", e.getMessage(), e);
+        }
+    }
+
+    private void ensureIndex(String name, String definition, String label) {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i "
+                        + "JOIN pg_class c ON c.oid = i.indexrelid "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND c.relname = ?",
+                Boolean.class, schema, name);
+        if (!valid.isEmpty() && Boolean.TRUE.equals(valid.get(0))) {
+            log.info("event=pgvector_index_ready mode={} index={}", label, name);
+            return;
+        }
+        if (!valid.isEmpty()) {
+            // Left INVALID by an interrupted concurrent build; IF NOT EXISTS would keep it forever.
+            drop(name);
+        }
+        long t0 = System.nanoTime();
+        log.info("event=pgvector_index_build_start mode={} index={}", label, name);
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name
+                + " ON " + schema + "." + table + " USING " + definition);
+        log.info("event=pgvector_index_build_done mode={} index={} ms={}", label, name, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private void drop(String name) {
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + schema + "." + name);
+        log.info("event=pgvector_index_dropped index={}", name);
+    }
+
+    @PreDestroy
+    public void close() {
+        worker.shutdownNow();
+    }
+}
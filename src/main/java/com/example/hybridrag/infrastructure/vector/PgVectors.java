@@ -0,0 +1,35 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoding helpers for pgvector values read over JDBC.
+ */
+public final class PgVectors {
+
+    private static final int HEADER_BYTES = 4;
+
+    private PgVectors() {
+    }
+
+    /**
+     * Decodes pgvector's binary wire format as returned by {@code vector_send(embedding)}:
+     * int16 dimensions, int16 unused, then dimensions x float4, all big-endian (same layout PgCopyLoader writes).
+     * Avoids the text round trip ({@code embedding::text} + split + parseDouble) and its per-component garbage.
+     */
+    public static float[] decode(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int dims = Short.toUnsignedInt(buf.getShort());
+        buf.getShort(); // unused
+        if (bytes.length != HEADER_BYTES + dims * Float.BYTES) {
+            throw new IllegalArgumentException(
+                    "Malformed pgvector value: dims=" + dims + " bytes=" + bytes.length);
+        }
+        float[] v = new float[dims];
+        buf.asFloatBuffer().get(v);
+        return v;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.nio.FloatBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Float similarity kernels shared by MMR and in-process vector search.
+ * <p>
+ * Dot products use the {@code jdk.incubator.vector} API ({@link SimdVectorMath}) when the module is in the boot
+ * layer (JVM started with {@code --add-modules jdk.incubator.vector}), otherwise a scalar loop. Set
+ * {@code -Dhybridrag.simd=false} to force the scalar path.
+ * <p>
+ * Rows in a direct {@link FloatBuffer} are read in place by a scalar loop: loading vectors straight from off-heap
+ * memory needs {@code MemorySegment}, which is still a preview API on Java 21.
+ */
+public final class VectorMath {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorMath.class);
+
+    private static final boolean SIMD = detectSimd();
+
+    private VectorMath() {
+    }
+
+    public static boolean simdEnabled() {
+        return SIMD;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0f;
+        }
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (SIMD) {
+            return SimdVectorMath.dot(a, aOffset, b, bOffset, length);
+        }
+        return scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Dot product of {@code a[aOffset..]} with {@code length} floats of {@code b} starting at absolute index
+     * {@code bOffset}; {@code b}'s position is not used or changed.
+     */
+    public static float dot(float[] a, int aOffset, FloatBuffer b, int bOffset, int length) {
+        // Four independent sums so consecutive multiply-adds do not wait on each other.
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (int upper = length & ~3; i < upper; i += 4) {
+            s0 += a[aOffset + i] * b.get(bOffset + i);
+            s1 += a[aOffset + i + 1] * b.get(bOffset + i + 1);
+            s2 += a[aOffset + i + 2] * b.get(bOffset + i + 2);
+            s3 += a[aOffset + i + 3] * b.get(bOffset + i + 3);
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b.get(bOffset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Copies {@code src} into {@code dst[dstOffset..]} scaled to unit length; a zero vector stays zero
+     * (so its dot product with anything is 0, matching cosine's convention here).
+     */
+    public static void normalizeInto(float[] src, float[] dst, int dstOffset) {
+        float norm = (float) Math.sqrt(dot(src, 0, src, 0, src.length));
+        float scale = norm == 0f ? 0f : 1f / norm;
+        for (int i = 0; i < src.length; i++) {
+            dst[dstOffset + i] = src[i] * scale;
+        }
+    }
+
+    static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    private static boolean detectSimd() {
+        if (!Boolean.parseBoolean(System.getProperty("hybridrag.simd", "true"))) {
+            log.info("event=vector_kernel impl=scalar reason=disabled");
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("event=vector_kernel impl=scalar reason=module_absent");
+            return false;
+        }
+        try {
+            float[] probe = {1f, 2f, 3f};
+            SimdVectorMath.dot(probe, 0, probe, 0, probe.length);
+            log.info("event=vector_kernel impl=simd lanes={}", SimdVectorMath.lanes());
+            return true;
+        } catch (LinkageError e) {
+            log.warn("event=vector_kernel impl=scalar reason=link_error msg={}", e.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.example.hybridrag.infrastructure.ingest.FileChunksChangedEvent;
+import com.example.hybridrag.infrastructure.ingest.FileRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chooses how a per-file vector search runs, from the file's chunk count (rag_files.chunks, or a count over
+ * {@code file_id} for files not registered yet).
+ * <p>
+ * The HNSW index covers the whole table, so a file_id filter is applied after the graph walk: for a small file that
+ * returns fewer than topK rows and wastes work, while an exact scan of its rows (via idx_rag_chunks_file_id) is
+ * both complete and cheap. Large files use HNSW with a raised ef_search and iterative scan.
+ */
+@Component
+public class VectorQueryPlanner {
+
+    private static final int MAX_CACHED_COUNTS = 10_000;
+
+    public enum Plan {
+        EXACT,
+        HNSW
+    }
+
+    public record Decision(Plan plan, int chunks) {
+    }
+
+    private final FileRegistry fileRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final int exactMaxChunks;
+    private final String countSql;
+    // Access-ordered LRU: with many files only the coldest counts are dropped, never all at once.
+    private final Map<String, Integer> chunkCounts = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_CACHED_COUNTS;
+        }
+    };
+
+    public VectorQueryPlanner(
+            FileRegistry fileRegistry,
+            JdbcTemplate jdbcTemplate,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.pgvector.search.exact-max-chunks}") int exactMaxChunks
+    ) {
+        this.fileRegistry = fileRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.exactMaxChunks = Math.max(0, exactMaxChunks);
+        this.countSql = "SELECT count(*) FROM " + schema + "." + table + " WHERE file_id = ?";
+    }
+
+    public Decision plan(String fileId) {
+        int chunks = chunkCount(fileId);
+        return new Decision(chunks <= exactMaxChunks ? Plan.EXACT : Plan.HNSW, chunks);
+    }
+
+    @EventListener
+    public void onFileChunksChanged(FileChunksChangedEvent event) {
+        synchronized (chunkCounts) {
+            chunkCounts.remove(event.fileId());
+        }
+    }
+
+    private int chunkCount(String fileId) {
+        Integer cached;
+        synchronized (chunkCounts) {
+            cached = chunkCounts.get(fileId);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        int count = fileRegistry.findByFileId(fileId)
+                .map(FileRegistry.RegisteredFile::chunks)
+                .orElseGet(() -> {
+                    Integer n = jdbcTemplate.queryForObject(countSql, Integer.class, fileId);
+                    return n == null ? 0 : n;
+                });
+        synchronized (chunkCounts) {
+            chunkCounts.put(fileId, count);
+        }
+        return count;
+    }
+}
@@ -1,78 +1,495 @@
 package com.example.hybridrag.infrastructure.vector;
 
 import com.example.hybridrag.application.service.ScoredChunk;
+import com.example.hybridrag.infrastructure.embedding.QueryEmbeddingCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+/**
+ * Native pgvector search: one query returns id, content, metadata, cosine distance and the embedding itself, so MMR
+ * does not need a second round trip for vectors Postgres just scanned. Ranking is cosine distance, as with
+ * PgVectorStore; {@link VectorQueryPlanner} picks an exact scan or HNSW per file.
+ * <p>
+ * Files resident in {@link HotVectorIndex} are answered in-process without touching Postgres.
+ * <p>
+ * {@link #hybridSearch} is the Postgres-only retrieval backend: vector candidates and full-text candidates
+ * (generated {@code content_tsv} column, GIN index) merged by a full outer join in the same statement.
+ */
 @Service
 public class VectorSearchService {
 
     private static final Logger log = LoggerFactory.getLogger(VectorSearchService.class);
 
-    private final PgVectorStore vectorStore;
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
 
-    public VectorSearchService(PgVectorStore vectorStore) {
-        this.vectorStore = vectorStore;
+    /**
+     * Must match the text search configuration of the generated content_tsv column (docker/init.sql).
+     */
+    private static final String TS_CONFIG = "simple";
+
+    /**
+     * ts_rank_cd normalization: 1 = divide by 1 + log(document length), 32 = rank / (rank + 1).
+     * Length-normalized, saturating term frequency: the BM25-like part Postgres offers (no IDF).
+     */
+    private static final int TS_RANK_NORMALIZATION = 1 | 32;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryEmbeddingCache queryEmbeddings;
+    private final HotVectorIndex hotIndex;
+    private final ObjectMapper objectMapper;
+    private final VectorQueryPlanner planner;
+    private final PgVectorIndexMigrator indexMigrator;
+    private final String qualified;
+    private final String exactCandidatesSql;
+    private final Map<VectorStorageMode, String> hnswCandidatesSql;
+    private final Map<VectorStorageMode, String> batchHnswCandidatesSql;
+    private final String batchQueriesCte;
+    private final String batchExactCandidatesSql;
+    private final String lexicalCandidatesSql;
+    private final String hnswSettingsSql;
+    private final int binaryRescoreFactor;
+    private final int efSearch;
+    private final String iterativeScan;
+    private final int queryTimeoutSeconds;
+    private final String embeddingsSql;
+
+    public VectorSearchService(
+            JdbcTemplate jdbcTemplate,
+            QueryEmbeddingCache queryEmbeddings,
+            HotVectorIndex hotIndex,
+            VectorQueryPlanner planner,
+            PgVectorIndexMigrator indexMigrator,
+            ObjectMapper objectMapper,
+            @Value("${hybridrag.pgvector.schema}") String schema,
+            @Value("${hybridrag.pgvector.table}") String table,
+            @Value("${hybridrag.pgvector.dimensions}") int dimensions,
+            @Value("${hybridrag.pgvector.storage.binary-rescore-factor}") int binaryRescoreFactor,
+            @Value("${hybridrag.pgvector.search.ef-search}") int efSearch,
+            @Value("${hybridrag.pgvector.search.iterative-scan}") String iterativeScan,
+            @Value("${hybridrag.pgvector.search.statement-timeout-ms}") long statementTimeoutMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queryEmbeddings = queryEmbeddings;
+        this.hotIndex = hotIndex;
+        this.planner = planner;
+        this.indexMigrator = indexMigrator;
+        this.objectMapper = objectMapper;
+        this.qualified = schema + "." + table;
+
+        // Candidate queries return (id, distance). Small files: MATERIALIZED keeps the planner off the HNSW index,
+        // so the file's rows are fetched through idx_rag_chunks_file_id and ranked exactly.
+        this.exactCandidatesSql = "WITH s AS MATERIALIZED (SELECT id, embedding FROM " + qualified + " WHERE file_id = ?) "
+                + "SELECT id, embedding <=> ? AS distance FROM s ORDER BY distance LIMIT ?";
+        this.hnswCandidatesSql = new EnumMap<>(VectorStorageMode.class);
+        this.batchHnswCandidatesSql = new EnumMap<>(VectorStorageMode.class);
+        for (VectorStorageMode mode : VectorStorageMode.values()) {
+            hnswCandidatesSql.put(mode, hnswCandidateSql(mode, qualified, dimensions, "?"));
+            batchHnswCandidatesSql.put(mode, hnswCandidateSql(mode, qualified, dimensions, "q.v"));
+        }
+        this.batchQueriesCte = "q AS (SELECT u.v::vector AS v, u.ord FROM unnest(?::text[]) WITH ORDINALITY AS u(v, ord))";
+        this.batchExactCandidatesSql = "SELECT id, embedding <=> q.v AS distance FROM s ORDER BY distance LIMIT ?";
+        // Any-term match (BM25 "match" semantics): plainto_tsquery's '&' between terms becomes '|'.
+        this.lexicalCandidatesSql = "SELECT id, ts_rank_cd(content_tsv, q.t, " + TS_RANK_NORMALIZATION + ") AS rank "
+                + "FROM " + qualified + ", "
+                + "(SELECT replace(plainto_tsquery('" + TS_CONFIG + "', ?)::text, '&', '|')::tsquery AS t) q "
+                + "WHERE file_id = ? AND content_tsv @@ q.t ORDER BY rank DESC LIMIT ?";
+
+        this.binaryRescoreFactor = Math.max(1, binaryRescoreFactor);
+        this.efSearch = Math.max(1, efSearch);
+        this.iterativeScan = iterativeScan == null || iterativeScan.isBlank() ? null : iterativeScan.trim();
+        // A search dropped at its retrieval deadline is cancelled by the server instead of holding the connection.
+        // JDBC query timeouts are whole seconds; pgjdbc sends a cancel request when one fires.
+        this.queryTimeoutSeconds = statementTimeoutMs > 0 ? (int) Math.max(1, (statementTimeoutMs + 999) / 1000) : 0;
+        this.hnswSettingsSql = this.iterativeScan == null
+                ? "SELECT set_config('hnsw.ef_search', ?, true)"
+                : "SELECT set_config('hnsw.ef_search', ?, true), set_config('hnsw.iterative_scan', ?, true)";
+        this.embeddingsSql = "SELECT id, vector_send(embedding) AS embedding_bin FROM " + qualified + " WHERE id = ANY(?)";
+    }
+
+    /**
+     * HNSW candidates (id, distance) for the query vector expression {@code v}: a bind parameter, or a column of
+     * the batch's query list. Package-private for the storage-mode benchmark.
+     */
+    static String hnswCandidateSql(VectorStorageMode mode, String qualified, int dimensions, String v) {
+        String distance = "SELECT id, embedding <=> " + v + " AS distance FROM ";
+        return switch (mode) {
+            case VECTOR -> distance + qualified + " WHERE file_id = ? ORDER BY distance LIMIT ?";
+            case HALFVEC -> distance + qualified + " WHERE file_id = ? "
+                    + "ORDER BY embedding::halfvec(" + dimensions + ") <=> " + v + "::halfvec(" + dimensions + ") LIMIT ?";
+            // Hamming-distance candidates from the bit index, re-ranked by full-precision cosine.
+            case BINARY -> distance + "(SELECT id, embedding FROM " + qualified + " WHERE file_id = ? "
+                    + "ORDER BY binary_quantize(embedding)::bit(" + dimensions + ") <~> binary_quantize(" + v + "::vector) "
+                    + "LIMIT ?) b ORDER BY distance LIMIT ?";
+        };
     }
 
-    public List<ScoredChunk> vectorSearch(String fileId, String query, int topK) {
-        String filterExpression = "fileId == '" + escapeForFilter(fileId) + "'";
+    /**
+     * Vector hits plus the embedding of every hit (keyed by chunk id), for MMR.
+     */
+    public record VectorHits(List<ScoredChunk> chunks, Map<UUID, float[]> embeddings) {
+
+        public static VectorHits empty() {
+            return new VectorHits(List.of(), Map.of());
+        }
+    }
 
-        SearchRequest request = SearchRequest.builder()
-                .query(query)
-                .topK(topK)
-                .filterExpression(filterExpression)
-                .build();
+    /**
+     * Union of vector and full-text candidates; each chunk carries its vector score and/or text rank
+     * (0 for the side that did not return it), fused score unset. Embeddings cover every chunk.
+     */
+    public record HybridHits(List<ScoredChunk> chunks, Map<UUID, float[]> embeddings, int vectorN, int lexicalN) {
+    }
 
-        List<Document> docs = vectorStore.similaritySearch(request);
+    @FunctionalInterface
+    private interface Binder {
+        /**
+         * @return next parameter index
+         */
+        int bind(PreparedStatement ps, int index) throws SQLException;
+    }
 
-        List<ScoredChunk> out = new ArrayList<>(docs.size());
-        for (Document d : docs) {
-            UUID id = UUID.fromString(d.getId());
-            Map<String, Object> md = d.getMetadata();
-            double score = extractVectorSimilarity(md);
+    private record Candidates(String sql, Binder binder) {
+    }
 
-            out.add(new ScoredChunk(
-                    id,
-                    fileId,
-                    d.getText(),
-                    md,
-                    score,
-                    0.0,
-                    score
-            ));
+    public VectorHits vectorSearch(String fileId, String query, int topK) {
+        float[] embedding = queryEmbeddings.embed(query);
+        Optional<VectorHits> hot = hotIndex.search(fileId, embedding, topK);
+        if (hot.isPresent()) {
+            return hot.get();
         }
 
-        log.info("event=pgvector_search fileId={} topK={} returned={}", fileId, topK, out.size());
-        return out;
+        VectorQueryPlanner.Decision decision = planner.plan(fileId);
+        VectorStorageMode storage = indexMigrator.effectiveMode();
+        Candidates vec = vectorCandidates(decision, storage, fileId, new PGvector(embedding), topK);
+        String sql = "WITH vec AS (" + vec.sql() + ") "
+                + "SELECT c.id, c.content, c.metadata::text AS metadata, vec.distance, "
+                + "vector_send(c.embedding) AS embedding_bin "
+                + "FROM vec JOIN " + qualified + " c ON c.id = vec.id ORDER BY vec.distance";
+
+        long t0 = System.nanoTime();
+        List<ScoredChunk> out = new ArrayList<>(topK);
+        Map<UUID, float[]> embeddings = new HashMap<>(topK * 2);
+        run(decision, storage, topK, conn -> {
+            try (PreparedStatement ps = prepare(conn, sql)) {
+                vec.binder().bind(ps, 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        UUID id = rs.getObject("id", UUID.class);
+                        double distance = rs.getDouble("distance");
+                        Map<String, Object> md = parseMetadata(objectMapper, rs.getString("metadata"));
+                        md.put("distance", distance);
+                        double score = vectorScore(distance);
+
+                        out.add(new ScoredChunk(
+                                id,
+                                fileId,
+                                rs.getString("content"),
+                                md,
+                                score,
+                                0.0,
+                                score
+                        ));
+                        putEmbedding(embeddings, id, rs);
+                    }
+                }
+            }
+            return null;
+        });
+
+        log.info("event=pgvector_search fileId={} topK={} returned={} plan={} storage={} chunks={} ms={}",
+                fileId, topK, out.size(), decision.plan(), storage, decision.chunks(), (System.nanoTime() - t0) / 1_000_000);
+        return new VectorHits(out, embeddings);
     }
 
     /**
-     * Spring AI vector stores often attach "distance" (lower is better) or "score" (higher is better) to metadata.
-     * We normalize to similarity in [0,1]-ish via 1/(1+distance) when distance is present.
+     * {@link #vectorSearch} for several queries over one file. The queries are embedded in one batch call; a file
+     * resident in the hot index is answered in-process, otherwise one statement runs every query through a
+     * {@code LATERAL} join (exact plans scan the file's rows once for all queries). Results are in query order.
      */
-    private static double extractVectorSimilarity(Map<String, Object> metadata) {
-        if (metadata == null || metadata.isEmpty()) {
-            return 0.0;
+    public List<VectorHits> vectorSearchBatch(String fileId, List<String> queries, int topK) {
+        List<float[]> vectors = queryEmbeddings.embedAll(queries);
+        int n = vectors.size();
+        VectorHits[] out = new VectorHits[n];
+        List<Integer> remote = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Optional<VectorHits> hot = hotIndex.search(fileId, vectors.get(i), topK);
+            if (hot.isPresent()) {
+                out[i] = hot.get();
+            } else {
+                remote.add(i);
+            }
         }
-        Object scoreObj = metadata.get("score");
-        if (scoreObj instanceof Number n) {
-            return clamp01(n.doubleValue());
+        if (remote.isEmpty()) {
+            return Arrays.asList(out);
         }
-        Object distObj = metadata.get("distance");
-        if (distObj instanceof Number n) {
-            double dist = Math.max(0.0, n.doubleValue());
-            return clamp01(1.0 / (1.0 + dist));
+
+        VectorQueryPlanner.Decision decision = planner.plan(fileId);
+        VectorStorageMode storage = indexMigrator.effectiveMode();
+        boolean exact = decision.plan() == VectorQueryPlanner.Plan.EXACT;
+        String candidates = exact ? batchExactCandidatesSql : batchHnswCandidatesSql.get(storage);
+        String sql = "WITH " + (exact ? "s AS MATERIALIZED (SELECT id, embedding FROM " + qualified + " WHERE file_id = ?), " : "")
+                + batchQueriesCte + " "
+                + "SELECT q.ord, c.id, c.content, c.metadata::text AS metadata, vec.distance, "
+                + "vector_send(c.embedding) AS embedding_bin "
+                + "FROM q CROSS JOIN LATERAL (" + candidates + ") vec "
+                + "JOIN " + qualified + " c ON c.id = vec.id ORDER BY q.ord, vec.distance";
+        String[] literals = new String[remote.size()];
+        for (int j = 0; j < literals.length; j++) {
+            literals[j] = new PGvector(vectors.get(remote.get(j))).getValue();
+        }
+        int candidateLimit = storage == VectorStorageMode.BINARY ? topK * binaryRescoreFactor : topK;
+
+        long t0 = System.nanoTime();
+        List<List<ScoredChunk>> chunks = new ArrayList<>(literals.length);
+        List<Map<UUID, float[]>> embeddings = new ArrayList<>(literals.length);
+        for (int j = 0; j < literals.length; j++) {
+            chunks.add(new ArrayList<>(topK));
+            embeddings.add(new HashMap<>(topK * 2));
         }
-        return 0.0;
+        run(decision, storage, topK, conn -> {
+            try (PreparedStatement ps = prepare(conn, sql)) {
+                int i = 1;
+                if (exact) {
+                    ps.setString(i++, fileId);
+                    ps.setArray(i++, conn.createArrayOf("text", literals));
+                } else {
+                    ps.setArray(i++, conn.createArrayOf("text", literals));
+                    ps.setString(i++, fileId);
+                    if (storage == VectorStorageMode.BINARY) {
+                        ps.setInt(i++, candidateLimit);
+                    }
+                }
+                ps.setInt(i, topK);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int j = rs.getInt("ord") - 1;
+                        UUID id = rs.getObject("id", UUID.class);
+                        double distance = rs.getDouble("distance");
+                        Map<String, Object> md = parseMetadata(objectMapper, rs.getString("metadata"));
+                        md.put("distance", distance);
+                        double score = vectorScore(distance);
+                        chunks.get(j).add(new ScoredChunk(id, fileId, rs.getString("content"), md, score, 0.0, score));
+                        putEmbedding(embeddings.get(j), id, rs);
+                    }
+                }
+            }
+            return null;
+        });
+        for (int j = 0; j < literals.length; j++) {
+            out[remote.get(j)] = new VectorHits(chunks.get(j), embeddings.get(j));
+        }
+
+        log.info("event=pgvector_search_batch fileId={} queries={} remote={} topK={} plan={} storage={} chunks={} ms={}",
+                fileId, n, remote.size(), topK, decision.plan(), storage, decision.chunks(),
+                (System.nanoTime() - t0) / 1_000_000);
+        return Arrays.asList(out);
+    }
+
+    /**
+     * Postgres-only hybrid retrieval: top {@code topK} by vector distance and top {@code topK} by full-text rank,
+     * merged in one statement (full outer join on id) together with content, metadata and embeddings.
+     */
+    public HybridHits hybridSearch(String fileId, String query, int topK) {
+        PGvector queryVector = new PGvector(queryEmbeddings.embed(query));
+        VectorQueryPlanner.Decision decision = planner.plan(fileId);
+        VectorStorageMode storage = indexMigrator.effectiveMode();
+        Candidates vec = vectorCandidates(decision, storage, fileId, queryVector, topK);
+        String sql = "WITH vec AS (" + vec.sql() + "), "
+                + "lex AS (" + lexicalCandidatesSql + "), "
+                + "m AS (SELECT coalesce(vec.id, lex.id) AS id, vec.distance, lex.rank "
+                + "FROM vec FULL OUTER JOIN lex ON lex.id = vec.id) "
+                + "SELECT c.id, c.content, c.metadata::text AS metadata, m.distance, m.rank, "
+                + "vector_send(c.embedding) AS embedding_bin "
+                + "FROM m JOIN " + qualified + " c ON c.id = m.id";
+
+        long t0 = System.nanoTime();
+        List<ScoredChunk> out = new ArrayList<>(topK * 2);
+        Map<UUID, float[]> embeddings = new HashMap<>(topK * 4);
+        int[] counts = new int[2];
+        run(decision, storage, topK, conn -> {
+            try (PreparedStatement ps = prepare(conn, sql)) {
+                int i = vec.binder().bind(ps, 1);
+                ps.setString(i++, query);
+                ps.setString(i++, fileId);
+                ps.setInt(i, topK);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        UUID id = rs.getObject("id", UUID.class);
+                        double distance = rs.getDouble("distance");
+                        boolean hasVector = !rs.wasNull();
+                        double rank = rs.getDouble("rank");
+                        boolean hasRank = !rs.wasNull();
+                        Map<String, Object> md = parseMetadata(objectMapper, rs.getString("metadata"));
+                        if (hasVector) {
+                            md.put("distance", distance);
+                            counts[0]++;
+                        }
+                        if (hasRank) {
+                            counts[1]++;
+                        }
+                        out.add(new ScoredChunk(
+                                id,
+                                fileId,
+                                rs.getString("content"),
+                                md,
+                                hasVector ? vectorScore(distance) : 0.0,
+                                hasRank ? rank : 0.0,
+                                0.0
+                        ));
+                        putEmbedding(embeddings, id, rs);
+                    }
+                }
+            }
+            return null;
+        });
+
+        log.info("event=pg_hybrid_search fileId={} topK={} vecN={} lexN={} mergedN={} plan={} storage={} ms={}",
+                fileId, topK, counts[0], counts[1], out.size(), decision.plan(), storage,
+                (System.nanoTime() - t0) / 1_000_000);
+        return new HybridHits(out, embeddings, counts[0], counts[1]);
+    }
+
+    private Candidates vectorCandidates(VectorQueryPlanner.Decision decision, VectorStorageMode storage,
+                                        String fileId, PGvector queryVector, int topK) {
+        if (decision.plan() == VectorQueryPlanner.Plan.EXACT) {
+            return new Candidates(exactCandidatesSql, (ps, i) -> {
+                ps.setString(i++, fileId);
+                ps.setObject(i++, queryVector);
+                ps.setInt(i++, topK);
+                return i;
+            });
+        }
+        int candidates = storage == VectorStorageMode.BINARY ? topK * binaryRescoreFactor : topK;
+        return new Candidates(hnswCandidatesSql.get(storage), (ps, i) -> {
+            ps.setObject(i++, queryVector);
+            ps.setString(i++, fileId);
+            if (storage != VectorStorageMode.VECTOR) {
+                ps.setObject(i++, queryVector);
+            }
+            if (storage == VectorStorageMode.BINARY) {
+                ps.setInt(i++, candidates);
+            }
+            ps.setInt(i++, topK);
+            return i;
+        });
+    }
+
+    /**
+     * Runs {@code body} on one pooled connection; HNSW plans get their per-query settings applied first. Exact plans
+     * need no settings and run as a single statement in autocommit.
+     */
+    private void run(VectorQueryPlanner.Decision decision, VectorStorageMode storage, int topK,
+                     ConnectionCallback<Void> body) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) conn -> {
+            if (decision.plan() == VectorQueryPlanner.Plan.EXACT) {
+                return body.doInConnection(conn);
+            }
+            // SET LOCAL-style settings only live inside a transaction.
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(hnswSettingsSql)) {
+                    int candidates = storage == VectorStorageMode.BINARY ? topK * binaryRescoreFactor : topK;
+                    ps.setString(1, String.valueOf(Math.max(efSearch, candidates)));
+                    if (iterativeScan != null) {
+                        ps.setString(2, iterativeScan);
+                    }
+                    ps.execute();
+                }
+                body.doInConnection(conn);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * A search statement carrying the query timeout.
+     */
+    private PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        if (queryTimeoutSeconds > 0) {
+            ps.setQueryTimeout(queryTimeoutSeconds);
+        }
+        return ps;
+    }
+
+    /**
+     * Embeddings for chunks that did not come back from {@link #vectorSearch} (e.g. BM25-only hits).
+     */
+    public Map<UUID, float[]> fetchEmbeddings(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, float[]> out = new HashMap<>(ids.size() * 2);
+        jdbcTemplate.execute((ConnectionCallback<Void>) conn -> {
+            Array uuidArray = conn.createArrayOf("uuid", ids.toArray());
+            try (PreparedStatement ps = conn.prepareStatement(embeddingsSql)) {
+                ps.setArray(1, uuidArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        putEmbedding(out, rs.getObject("id", UUID.class), rs);
+                    }
+                }
+            }
+            return null;
+        });
+        return out;
+    }
+
+    private static void putEmbedding(Map<UUID, float[]> embeddings, UUID id, ResultSet rs) throws SQLException {
+        float[] vector = PgVectors.decode(rs.getBytes("embedding_bin"));
+        if (vector != null) {
+            embeddings.put(id, vector);
+        }
+    }
+
+    static Map<String, Object> parseMetadata(ObjectMapper objectMapper, String json) {
+        if (json == null || json.isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            log.warn("event=pgvector_metadata_unparseable msg={}", e.getOriginalMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Cosine distance to a similarity in [0,1]-ish via 1/(1+distance).
+     */
+    private static double vectorScore(double distance) {
+        return clamp01(1.0 / (1.0 + Math.max(0.0, distance)));
     }
 
     private static double clamp01(double v) {
@@ -81,8 +498,4 @@ public class VectorSearchService {
         }
         return Math.max(0.0, Math.min(1.0, v));
     }
-
-    private static String escapeForFilter(String s) {
-        return s.replace("'", "''");
-    }
-}
\ No newline at end of file
+}
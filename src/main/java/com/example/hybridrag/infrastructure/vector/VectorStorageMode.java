@@ -0,0 +1,38 @@
+package com.example.hybridrag.infrastructure.vector;
+
+/**
+ * How the HNSW index stores embeddings (hybridrag.pgvector.storage.mode). The {@code embedding vector(n)} column
+ * stays full precision in every mode; compact modes index an expression over it, so distances returned to callers,
+ * MMR vectors and re-scoring are always exact.
+ * <ul>
+ *   <li>{@code vector}: float4 HNSW (~4 bytes/dim)</li>
+ *   <li>{@code halfvec}: HNSW over {@code embedding::halfvec(n)} (~2 bytes/dim)</li>
+ *   <li>{@code binary}: HNSW over {@code binary_quantize(embedding)} with Hamming distance (1 bit/dim); the top
+ *   candidates are re-scored with full-precision cosine</li>
+ * </ul>
+ */
+public enum VectorStorageMode {
+    VECTOR,
+    HALFVEC,
+    BINARY;
+
+    public static VectorStorageMode parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+
+    String indexName(String table) {
+        return switch (this) {
+            case VECTOR -> "idx_" + table + "_embedding_hnsw";
+            case HALFVEC -> "idx_" + table + "_embedding_halfvec_hnsw";
+            case BINARY -> "idx_" + table + "_embedding_bit_hnsw";
+        };
+    }
+
+    String indexDefinition(int dims) {
+        return switch (this) {
+            case VECTOR -> "hnsw (embedding vector_cosine_ops)";
+            case HALFVEC -> "hnsw ((embedding::halfvec(" + dims + ")) halfvec_cosine_ops)";
+            case BINARY -> "hnsw ((binary_quantize(embedding)::bit(" + dims + ")) bit_hamming_ops)";
+        };
+    }
+}
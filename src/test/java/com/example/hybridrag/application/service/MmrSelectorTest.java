@@ -0,0 +1,211 @@
+package com.example.hybridrag.application.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link MmrSelector} against the quadratic MMR loop it replaced ({@link #legacySelect}). Runs under both vector
+ * kernels: the build repeats it with {@code -Dhybridrag.simd=false}.
+ */
+class MmrSelectorTest {
+
+    @Test
+    void matchesLegacySelectionOnSeededRandomPools() {
+        Random rnd = new Random(1234);
+        for (int trial = 0; trial < 300; trial++) {
+            int n = 1 + rnd.nextInt(40);
+            int dims = 4 + rnd.nextInt(96);
+            int k = 1 + rnd.nextInt(12);
+            double lambda = rnd.nextDouble();
+
+            List<ScoredChunk> ranked = new ArrayList<>();
+            Map<UUID, float[]> embeddings = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                ScoredChunk sc = chunk(rnd.nextDouble());
+                ranked.add(sc);
+                // ~15% of candidates (BM25-only hits whose lookup failed) have no embedding
+                if (rnd.nextInt(100) >= 15) {
+                    embeddings.put(sc.id(), randomVector(rnd, dims));
+                }
+            }
+            ranked.sort(Comparator.comparingDouble(ScoredChunk::fusedScore).reversed());
+
+            int t = trial;
+            assertEquals(ids(legacySelect(ranked, embeddings, k, lambda)), ids(MmrSelector.select(ranked, embeddings, k, lambda)),
+                    "trial " + t + " n=" + n + " dims=" + dims + " k=" + k);
+        }
+    }
+
+    @Test
+    void tiesResolveToTheEarlierCandidateLikeLegacy() {
+        // b and c share score and embedding: both loops keep the first strictly better MMR value, i.e. b.
+        ScoredChunk a = chunk(0.9);
+        ScoredChunk b = chunk(0.5);
+        ScoredChunk c = chunk(0.5);
+        ScoredChunk d = chunk(0.5);
+        List<ScoredChunk> ranked = List.of(a, b, c, d);
+        Map<UUID, float[]> embeddings = Map.of(
+                a.id(), new float[]{1, 0, 0},
+                b.id(), new float[]{0, 1, 0},
+                c.id(), new float[]{0, 1, 0},
+                d.id(), new float[]{0, 2, 0});
+
+        List<ScoredChunk> selected = MmrSelector.select(ranked, embeddings, 2, 0.5);
+
+        assertEquals(ids(legacySelect(ranked, embeddings, 2, 0.5)), ids(selected));
+        assertEquals(List.of(a.id(), b.id()), ids(selected));
+    }
+
+    @Test
+    void candidatesWithoutEmbeddingAreSkippedIncludingTheTopOne() {
+        ScoredChunk a = chunk(0.9);
+        ScoredChunk b = chunk(0.8);
+        ScoredChunk c = chunk(0.7);
+        List<ScoredChunk> ranked = List.of(a, b, c);
+        Map<UUID, float[]> embeddings = Map.of(
+                b.id(), new float[]{1, 0},
+                c.id(), new float[]{0, 1});
+
+        List<ScoredChunk> selected = MmrSelector.select(ranked, embeddings, 3, 0.7);
+
+        assertEquals(ids(legacySelect(ranked, embeddings, 3, 0.7)), ids(selected));
+        assertEquals(List.of(b.id(), c.id()), ids(selected));
+    }
+
+    @Test
+    void kLargerThanPoolReturnsEveryEmbeddedCandidateByFusedScore() {
+        Random rnd = new Random(5);
+        List<ScoredChunk> ranked = new ArrayList<>();
+        Map<UUID, float[]> embeddings = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            ScoredChunk sc = chunk(1.0 - i * 0.1);
+            ranked.add(sc);
+            embeddings.put(sc.id(), randomVector(rnd, 16));
+        }
+
+        List<ScoredChunk> selected = MmrSelector.select(ranked, embeddings, 50, 0.3);
+
+        assertEquals(ids(legacySelect(ranked, embeddings, 50, 0.3)), ids(selected));
+        assertEquals(ids(ranked), ids(selected));
+    }
+
+    @Test
+    void noEmbeddingsSelectsNothing() {
+        List<ScoredChunk> ranked = List.of(chunk(0.9), chunk(0.8));
+
+        assertEquals(List.of(), MmrSelector.select(ranked, Map.of(), 2, 0.7));
+        assertEquals(List.of(), legacySelect(ranked, Map.of(), 2, 0.7));
+    }
+
+    @Test
+    void zeroVectorCountsAsDissimilar() {
+        ScoredChunk a = chunk(0.9);
+        ScoredChunk b = chunk(0.8);
+        ScoredChunk c = chunk(0.7);
+        List<ScoredChunk> ranked = List.of(a, b, c);
+        Map<UUID, float[]> embeddings = Map.of(
+                a.id(), new float[]{1, 0},
+                b.id(), new float[]{1, 0.01f},
+                c.id(), new float[]{0, 0});
+
+        List<ScoredChunk> selected = MmrSelector.select(ranked, embeddings, 2, 0.5);
+
+        assertEquals(ids(legacySelect(ranked, embeddings, 2, 0.5)), ids(selected));
+        assertEquals(List.of(a.id(), c.id()), ids(selected));
+    }
+
+    /**
+     * The selection loop MmrSelector replaced, minus the candidate cap and embedding fetch done by the caller.
+     */
+    private static List<ScoredChunk> legacySelect(List<ScoredChunk> candidates, Map<UUID, float[]> embeddings,
+                                                  int k, double lambda) {
+        List<ScoredChunk> selected = new ArrayList<>(k);
+        Set<UUID> selectedIds = new HashSet<>();
+
+        for (ScoredChunk sc : candidates) {
+            if (embeddings.containsKey(sc.id())) {
+                selected.add(sc);
+                selectedIds.add(sc.id());
+                break;
+            }
+        }
+
+        while (selected.size() < Math.min(k, candidates.size())) {
+            ScoredChunk best = null;
+            double bestScore = -Double.MAX_VALUE;
+            for (ScoredChunk c : candidates) {
+                if (selectedIds.contains(c.id())) {
+                    continue;
+                }
+                float[] ce = embeddings.get(c.id());
+                if (ce == null) {
+                    continue;
+                }
+                double maxSimToSelected = 0.0;
+                for (ScoredChunk s : selected) {
+                    float[] se = embeddings.get(s.id());
+                    if (se != null) {
+                        maxSimToSelected = Math.max(maxSimToSelected, cosine(ce, se));
+                    }
+                }
+                double mmr = lambda * c.fusedScore() - (1.0 - lambda) * maxSimToSelected;
+                if (mmr > bestScore) {
+                    bestScore = mmr;
+                    best = c;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            selected.add(best);
+            selectedIds.add(best.id());
+        }
+
+        selected.sort(Comparator.comparingDouble(ScoredChunk::fusedScore).reversed());
+        return selected;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0.0;
+        }
+        float dot = 0f;
+        float na = 0f;
+        float nb = 0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        if (na == 0f || nb == 0f) {
+            return 0.0;
+        }
+        return dot / Math.sqrt((double) na * nb);
+    }
+
+    private static ScoredChunk chunk(double fused) {
+        return new ScoredChunk(UUID.randomUUID(), "f", "", Map.of(), fused, 0.0, fused);
+    }
+
+    private static float[] randomVector(Random rnd, int dims) {
+        float[] v = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            v[i] = (float) rnd.nextGaussian();
+        }
+        return v;
+    }
+
+    private static List<UUID> ids(List<ScoredChunk> chunks) {
+        return chunks.stream().map(ScoredChunk::id).toList();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.hybridrag.application.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchLegTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void legPastDeadlineIsDegradedAndInterrupted() throws Exception {
+        SearchLeg leg = leg(50, false, new Semaphore(1));
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> f = leg.start(() -> blockUntilInterrupted(interrupted));
+        SearchLeg.Outcome<String> out = leg.await(f, System.nanoTime(), "f");
+
+        assertEquals("timeout", out.degraded());
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "running call was not interrupted");
+    }
+
+    @Test
+    void queuedCallOfDroppedLegNeverRuns() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            SearchLeg leg = new SearchLeg("test", single, new SimpleMeterRegistry(), 50, false, 0, new Semaphore(1));
+            CountDownLatch release = new CountDownLatch(1);
+            single.execute(() -> awaitQuietly(release));
+            AtomicBoolean ran = new AtomicBoolean();
+
+            CompletableFuture<String> f = leg.start(() -> {
+                ran.set(true);
+                return "late";
+            });
+            SearchLeg.Outcome<String> out = leg.await(f, System.nanoTime(), "f");
+            release.countDown();
+            single.submit(() -> { }).get(2, TimeUnit.SECONDS);
+
+            assertEquals("timeout", out.degraded());
+            assertFalse(ran.get(), "cancelled call still ran once dequeued");
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void hedgeWinsAndLosingCallIsInterrupted() throws Exception {
+        SearchLeg leg = leg(2_000, true, new Semaphore(1));
+        warmUp(leg);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> f = leg.start(() -> calls.incrementAndGet() == 1
+                ? blockUntilInterrupted(interrupted)
+                : "hedge");
+        SearchLeg.Outcome<String> out = leg.await(f, System.nanoTime(), "f");
+
+        assertEquals("hedge", out.value());
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "losing call was not interrupted");
+    }
+
+    @Test
+    void noHedgeWithoutFreeSlot() throws Exception {
+        SearchLeg leg = leg(200, true, new Semaphore(0));
+        warmUp(leg);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> f = leg.start(() -> {
+            calls.incrementAndGet();
+            return blockUntilInterrupted(new CountDownLatch(1));
+        });
+        SearchLeg.Outcome<String> out = leg.await(f, System.nanoTime(), "f");
+
+        assertEquals("timeout", out.degraded());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failureOfOnlyCallIsReportedAsError() {
+        SearchLeg leg = leg(1_000, false, new Semaphore(1));
+
+        SearchLeg.Outcome<String> out = leg.await(leg.start(() -> {
+            throw new IllegalStateException("boom");
+        }), System.nanoTime(), "f");
+
+        assertEquals("error", out.degraded());
+    }
+
+    private SearchLeg leg(long deadlineMs, boolean hedge, Semaphore slots) {
+        return new SearchLeg("test", executor, new SimpleMeterRegistry(), deadlineMs, hedge, 10, slots);
+    }
+
+    // Enough fast samples for a p95, so the hedge fires after the 10 ms minimum delay.
+    private static void warmUp(SearchLeg leg) {
+        for (int i = 0; i < 40; i++) {
+            assertTrue(leg.await(leg.start(() -> "ok"), System.nanoTime(), "warm").ok());
+        }
+    }
+
+    private static String blockUntilInterrupted(CountDownLatch interrupted) {
+        try {
+            Thread.sleep(10_000);
+            return "slow";
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw new IllegalStateException("interrupted", e);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import com.example.hybridrag.infrastructure.ingest.FileChunksChangedEvent.Change;
+import org.junit.jupiter.api.Test;
+
+class FileGenerationsTest {
+
+    @Test
+    void writeAndDeleteBothInvalidateEarlierSnapshots() {
+        FileGenerations generations = new FileGenerations();
+
+        long before = generations.current("a");
+        generations.advance(new FileChunksChangedEvent("a", Change.WRITTEN));
+        long written = generations.current("a");
+        generations.advance(new FileChunksChangedEvent("a", Change.DELETED));
+        long deleted = generations.current("a");
+        generations.advance(new FileChunksChangedEvent("a", Change.WRITTEN));
+
+        assertNotEquals(before, written);
+        assertNotEquals(written, deleted);
+        assertNotEquals(before, deleted);
+        assertNotEquals(deleted, generations.current("a"));
+    }
+
+    @Test
+    void deleteOfAnotherFileStalesSnapshotsOfUnwrittenFilesOnly() {
+        FileGenerations generations = new FileGenerations();
+        generations.advance(new FileChunksChangedEvent("kept", Change.WRITTEN));
+        long kept = generations.current("kept");
+        long neverWritten = generations.current("other");
+
+        generations.advance(new FileChunksChangedEvent("gone", Change.DELETED));
+
+        assertEquals(kept, generations.current("kept"));
+        assertNotEquals(neverWritten, generations.current("other"));
+    }
+
+    @Test
+    void onlyLiveWrittenFilesAreTracked() {
+        FileGenerations generations = new FileGenerations();
+        for (int i = 0; i < 1000; i++) {
+            generations.current("probe-" + i);
+        }
+        generations.advance(new FileChunksChangedEvent("a", Change.WRITTEN));
+        generations.advance(new FileChunksChangedEvent("b", Change.WRITTEN));
+        generations.advance(new FileChunksChangedEvent("a", Change.DELETED));
+
+        assertEquals(1, generations.size());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The split/join chunker TokenTextChunker replaced, kept as the reference for tests and the benchmark.
+ */
+final class LegacyTokenTextChunker {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int chunkTokens;
+    private final int overlapTokens;
+    private final int minChars;
+
+    LegacyTokenTextChunker(int chunkTokens, int overlapTokens, int minChars) {
+        this.chunkTokens = chunkTokens;
+        this.overlapTokens = overlapTokens;
+        this.minChars = minChars;
+    }
+
+    List<String> chunk(String text) {
+        String cleaned = text == null ? "" : text.trim();
+        if (cleaned.isEmpty()) {
+            return List.of();
+        }
+
+        String[] tokens = WHITESPACE.split(cleaned);
+        List<String> chunks = new ArrayList<>();
+
+        int start = 0;
+        while (start < tokens.length) {
+            int end = Math.min(tokens.length, start + chunkTokens);
+            String chunk = join(tokens, start, end).trim();
+
+            if (chunk.length() >= minChars) {
+                chunks.add(chunk);
+            } else {
+                if (!chunks.isEmpty() && (chunks.get(chunks.size() - 1).length() < (minChars * 2))) {
+                    String merged = (chunks.get(chunks.size() - 1) + "\n" + chunk).trim();
+                    chunks.set(chunks.size() - 1, merged);
+                } else if (!chunk.isBlank()) {
+                    chunks.add(chunk);
+                }
+            }
+
+            if (end >= tokens.length) {
+                break;
+            }
+            start = Math.max(0, end - overlapTokens);
+        }
+
+        return chunks;
+    }
+
+    private static String join(String[] tokens, int start, int end) {
+        StringBuilder sb = new StringBuilder(Math.max(0, (end - start) * 8));
+        for (int i = start; i < end; i++) {
+            sb.append(tokens[i]);
+            if (i < end - 1) {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Legacy split/join chunker vs the offset-based one, at the default chunk settings (320 / 64 / 200).
+ * <p>
+ * Not part of the test run; start {@link #main} from the IDE, or after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main TokenTextChunkerBenchmark}.
+ * Add {@code -prof gc} to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class TokenTextChunkerBenchmark {
+
+    private static final int PAGE_CHARS = 3_000;
+
+    @Param({"1", "50"})
+    public int sizeMb;
+
+    private String text;
+    private List<String> pages;
+    private LegacyTokenTextChunker legacy;
+    private TokenTextChunker chunker;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(7);
+        int targetChars = sizeMb * 1024 * 1024;
+        StringBuilder sb = new StringBuilder(targetChars + 32);
+        while (sb.length() < targetChars) {
+            // Word lengths 1..12 with the occasional double space / line break, roughly like extracted PDF text.
+            int len = 1 + rnd.nextInt(12);
+            for (int i = 0; i < len; i++) {
+                sb.append((char) ('a' + rnd.nextInt(26)));
+            }
+            int sep = rnd.nextInt(20);
+            sb.append(sep == 0 ? "\n" : sep == 1 ? "  " : " ");
+        }
+        text = sb.toString();
+        pages = splitPages(text);
+        legacy = new LegacyTokenTextChunker(320, 64, 200);
+        chunker = new TokenTextChunker(320, 64, 200);
+    }
+
+    @Benchmark
+    public List<String> legacySplitJoin() {
+        return legacy.chunk(text);
+    }
+
+    @Benchmark
+    public List<String> offsetBased() {
+        return chunker.chunk(text);
+    }
+
+    @Benchmark
+    public void offsetBasedStreamedPages(Blackhole bh) {
+        TokenTextChunker.Session session = chunker.open(bh::consume);
+        for (int p = 0; p < pages.size(); p++) {
+            session.accept(p + 1, pages.get(p));
+        }
+        session.finish();
+    }
+
+    private static List<String> splitPages(String text) {
+        List<String> out = new ArrayList<>();
+        for (int start = 0; start < text.length(); ) {
+            int end = Math.min(text.length(), start + PAGE_CHARS);
+            // Break pages at whitespace, as real pages never split a word.
+            while (end < text.length() && text.charAt(end) != ' ' && text.charAt(end) != '\n') {
+                end++;
+            }
+            out.add(text.substring(start, end));
+            start = end;
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenTextChunkerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.hybridrag.infrastructure.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class TokenTextChunkerTest {
+
+    @Test
+    void windowsAdvanceByChunkMinusOverlap() {
+        TokenTextChunker chunker = new TokenTextChunker(5, 2, 0);
+
+        List<String> chunks = chunker.chunk(words(0, 12));
+
+        assertEquals(List.of(words(0, 5), words(3, 8), words(6, 11), words(9, 12)), chunks);
+    }
+
+    @Test
+    void noTrailingChunkMadeOfOverlapOnly() {
+        TokenTextChunker chunker = new TokenTextChunker(5, 2, 0);
+
+        // 8 tokens: [0,5) and [3,8); the last window ends exactly at the input end.
+        assertEquals(List.of(words(0, 5), words(3, 8)), chunker.chunk(words(0, 8)));
+        assertEquals(List.of(words(0, 5)), chunker.chunk(words(0, 5)));
+        assertEquals(List.of(words(0, 3)), chunker.chunk(words(0, 3)));
+    }
+
+    @Test
+    void emptyAndBlankInputYieldNoChunks() {
+        TokenTextChunker chunker = new TokenTextChunker(5, 2, 0);
+
+        assertEquals(List.of(), chunker.chunk(null));
+        assertEquals(List.of(), chunker.chunk(""));
+        assertEquals(List.of(), chunker.chunk(" \n\t "));
+    }
+
+    @Test
+    void rejectsOverlapNotSmallerThanWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenTextChunker(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenTextChunker(4, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenTextChunker(4, -1, 0));
+    }
+
+    @Test
+    void chunkContentKeepsOriginalWhitespace() {
+        TokenTextChunker chunker = new TokenTextChunker(3, 1, 0);
+
+        List<String> chunks = chunker.chunk("  a\t\tb\n c   d e  ");
+
+        assertEquals(List.of("a\t\tb\n c", "c   d e"), chunks);
+    }
+
+    @Test
+    void matchesLegacyWindowsOnSingleSpacedText() {
+        TokenTextChunker chunker = new TokenTextChunker(7, 3, 10);
+        LegacyTokenTextChunker legacy = new LegacyTokenTextChunker(7, 3, 10);
+
+        // Every window is >= minChars, so no merge happens and both cut the same windows.
+        String text = IntStream.range(0, 101).mapToObj(i -> "token" + i).collect(Collectors.joining(" "));
+
+        assertEquals(legacy.chunk(text), chunker.chunk(text));
+    }
+
+    @Test
+    void shortTailIsMergedIntoPreviousChunkWithoutRepeatingOverlap() {
+        // Windows of 4 words "wNN" (15 chars); the 3-word tail (11 chars) is below minChars.
+        TokenTextChunker chunker = new TokenTextChunker(4, 1, 12);
+        String text = words(10, 19);
+
+        List<String> chunks = chunker.chunk(text);
+
+        // [10,14) [13,17) [16,19): the tail joins [13,17) as the span [13,19), w16 appears once.
+        assertEquals(List.of(words(10, 14), words(13, 19)), chunks);
+        // The legacy chunker concatenated "prev\ntail", repeating the overlap token w16.
+        assertEquals(List.of(words(10, 14), words(13, 17) + "\n" + words(16, 19)),
+                new LegacyTokenTextChunker(4, 1, 12).chunk(text));
+    }
+
+    @Test
+    void shortChunkIsKeptWhenPreviousIsAlreadyLong() {
+        TokenTextChunker chunker = new TokenTextChunker(3, 0, 4);
+
+        // The short tail "w13" may only merge into a chunk shorter than 2 * minChars; "w10 w11 w12" is 11 chars.
+        List<String> chunks = chunker.chunk("w10 w11 w12 w13");
+
+        assertEquals(List.of("w10 w11 w12", "w13"), chunks);
+    }
+
+    @Test
+    void sessionCarriesPageRangesAndSeparatesPages() {
+        TokenTextChunker chunker = new TokenTextChunker(4, 1, 0);
+        List<TextChunk> chunks = new ArrayList<>();
+
+        TokenTextChunker.Session session = chunker.open(chunks::add);
+        session.accept(1, "w10 w11 w12");
+        session.accept(2, "w13 w14");
+        session.accept(3, "");
+        session.accept(4, "w15 w16 w17");
+        session.finish();
+
+        assertEquals(List.of(
+                new TextChunk(0, "w10 w11 w12\nw13", 1, 2),
+                new TextChunk(1, "w13 w14\nw15 w16", 2, 4),
+                new TextChunk(2, "w16 w17", 4, 4)
+        ), chunks);
+    }
+
+    @Test
+    void pageBreakClosesTokenEvenWithoutTrailingWhitespace() {
+        TokenTextChunker chunker = new TokenTextChunker(10, 0, 0);
+        List<TextChunk> chunks = new ArrayList<>();
+
+        TokenTextChunker.Session session = chunker.open(chunks::add);
+        session.accept(1, "end");
+        session.accept(2, "start");
+        session.finish();
+
+        assertEquals(List.of(new TextChunk(0, "end\nstart", 1, 2)), chunks);
+    }
+
+    @Test
+    void streamingManyPagesMatchesWholeTextAcrossCompactions() {
+        // Pages are far larger in total than a window, so the session compacts its buffer many times; any offset
+        // slip after a compaction shows up as different chunk text.
+        Random rnd = new Random(42);
+        List<String> pages = new ArrayList<>();
+        for (int p = 0; p < 400; p++) {
+            StringBuilder page = new StringBuilder();
+            int n = rnd.nextInt(120);
+            for (int i = 0; i < n; i++) {
+                page.append("p").append(p).append('w').append(i).append(rnd.nextInt(4) == 0 ? "  " : " ");
+            }
+            pages.add(page.toString().trim());
+        }
+        TokenTextChunker chunker = new TokenTextChunker(50, 10, 40);
+
+        List<TextChunk> streamed = new ArrayList<>();
+        TokenTextChunker.Session session = chunker.open(streamed::add);
+        for (int p = 0; p < pages.size(); p++) {
+            session.accept(p + 1, pages.get(p));
+        }
+        session.finish();
+
+        String whole = pages.stream().filter(s -> !s.isEmpty()).collect(Collectors.joining("\n"));
+        List<String> expected = chunker.chunk(whole);
+        assertEquals(expected, streamed.stream().map(TextChunk::content).toList());
+        for (int i = 0; i < streamed.size(); i++) {
+            TextChunk c = streamed.get(i);
+            assertEquals(i, c.index());
+            assertTrue(c.pageStart() <= c.pageEnd(), "page range of chunk " + i);
+        }
+    }
+
+    @Test
+    void sessionIsReusableAfterFinish() {
+        TokenTextChunker chunker = new TokenTextChunker(3, 1, 0);
+        List<TextChunk> chunks = new ArrayList<>();
+
+        TokenTextChunker.Session session = chunker.open(chunks::add);
+        session.accept(1, "a b c d");
+        session.finish();
+        session.finish();
+
+        assertEquals(List.of("a b c", "c d"), chunks.stream().map(TextChunk::content).toList());
+    }
+
+    private static String words(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "w" + i).collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.hybridrag.infrastructure.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FileTermIndexTest {
+
+    @Test
+    void rareTermOutweighsCommonTerm() {
+        // "report" is in every document, "invoice" in one: matching the rare term scores higher.
+        FileTermIndex index = index(
+                "quarterly report invoice",
+                "quarterly report summary",
+                "annual report summary",
+                "annual report figures");
+
+        List<FileTermIndex.Hit> hits = index.search("report invoice", 10);
+
+        assertEquals(0, hits.get(0).doc());
+        assertEquals(4, hits.size());
+        assertTrue(hits.get(0).score() > 2 * hits.get(1).score());
+    }
+
+    @Test
+    void higherTermFrequencyAndShorterDocumentRankFirst() {
+        FileTermIndex index = index(
+                "cache cache cache miss",
+                "cache miss",
+                "cache miss with a much longer tail of unrelated words here",
+                "nothing relevant");
+
+        List<Integer> ranked = docs(index.search("cache", 10));
+
+        assertEquals(List.of(0, 1, 2), ranked);
+    }
+
+    @Test
+    void scoresFollowBm25Formula() {
+        FileTermIndex index = index("a b b", "b c", "c c c d");
+        // n=3, avgdl=9/3; term b: df=2, tf 2 in doc 0 (dl 3), tf 1 in doc 1 (dl 2)
+        double idf = Math.log(1.0 + (3 - 2 + 0.5) / (2 + 0.5));
+        double avgdl = 3.0;
+
+        List<FileTermIndex.Hit> hits = index.search("b", 10);
+
+        assertEquals(2, hits.size());
+        assertEquals(0, hits.get(0).doc());
+        assertEquals(bm25(idf, 2, 3, avgdl), hits.get(0).score(), 1e-5);
+        assertEquals(bm25(idf, 1, 2, avgdl), hits.get(1).score(), 1e-5);
+    }
+
+    @Test
+    void repeatedQueryTermsCountOnce() {
+        FileTermIndex index = index("alpha beta", "beta gamma");
+
+        assertEquals(index.search("alpha", 10).get(0).score(), index.search("alpha alpha ALPHA", 10).get(0).score());
+    }
+
+    @Test
+    void kAtOrAboveMatchCountReturnsEveryMatchSorted() {
+        FileTermIndex index = index("x y", "x", "y z", "x x y", "unrelated");
+
+        List<FileTermIndex.Hit> all = index.search("x y", 100);
+        List<FileTermIndex.Hit> exact = index.search("x y", 4);
+
+        assertEquals(4, all.size());
+        assertEquals(all, exact);
+        assertDescending(all);
+        assertTrue(docs(all).stream().noneMatch(d -> d == 4));
+    }
+
+    @Test
+    void noMatchEmptyQueryAndNonPositiveKGiveNothing() {
+        FileTermIndex index = index("one two", "three");
+
+        assertEquals(List.of(), index.search("four", 10));
+        assertEquals(List.of(), index.search("", 10));
+        assertEquals(List.of(), index.search(null, 10));
+        assertEquals(List.of(), index.search("one", 0));
+        assertEquals(List.of(), index(new String[0]).search("one", 10));
+    }
+
+    @Test
+    void topKMatchesFullSortOnRandomCorpus() {
+        Random rnd = new Random(99);
+        String[] docs = new String[400];
+        for (int d = 0; d < docs.length; d++) {
+            StringBuilder sb = new StringBuilder();
+            int len = 1 + rnd.nextInt(30);
+            for (int i = 0; i < len; i++) {
+                // Zipf-ish vocabulary: low term numbers are frequent.
+                sb.append('t').append((int) Math.pow(rnd.nextInt(40), 2) / 20).append(' ');
+            }
+            docs[d] = sb.toString();
+        }
+        FileTermIndex index = index(docs);
+
+        for (String query : List.of("t0", "t1 t5", "t3 t17 t60", "t80 t2")) {
+            List<FileTermIndex.Hit> all = index.search(query, docs.length);
+            for (int k : new int[]{1, 5, 17, 64}) {
+                List<FileTermIndex.Hit> top = index.search(query, k);
+                assertEquals(Math.min(k, all.size()), top.size(), query + " k=" + k);
+                assertDescending(top);
+                for (int i = 0; i < top.size(); i++) {
+                    assertEquals(all.get(i).score(), top.get(i).score(), query + " k=" + k + " rank " + i);
+                }
+            }
+            float[] expected = new float[all.size()];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = all.get(i).score();
+            }
+            float[] sorted = expected.clone();
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length; i++) {
+                assertEquals(sorted[sorted.length - 1 - i], expected[i]);
+            }
+        }
+    }
+
+    @Test
+    void tokenizerSplitsOnNonAlphanumericsAndLowerCases() {
+        assertEquals(List.of("hello", "world", "42", "x2"), tokens("Hello, WORLD! 42 -- x2."));
+        assertEquals(List.of(), tokens(" \t.,;!? "));
+        assertEquals(List.of(), tokens(null));
+    }
+
+    @Test
+    void tokenizerKeepsUnicodeWordsWhole() {
+        // Precomposed and combining-mark spellings each stay one token; case folding is locale-independent.
+        assertEquals(List.of("café", "naïve"), tokens("Café NAÏVE"));
+        assertEquals(List.of("café"), tokens("CAFÉ"));
+        assertEquals(List.of("istanbul"), tokens("ISTANBUL"));
+        assertEquals(List.of("日本語", "テキスト"), tokens("日本語、テキスト"));
+        assertEquals(List.of("привет", "мир"), tokens("Привет, мир"));
+        // Supplementary code points (mathematical letters) are letters too.
+        assertEquals(List.of("𝔄𝔅"), tokens("𝔄𝔅"));
+    }
+
+    @Test
+    void unicodeQueryMatchesDifferentlyCasedDocument() {
+        FileTermIndex index = index("Überblick über die Daten", "overview of the data");
+
+        assertEquals(List.of(0), docs(index.search("ÜBERBLICK", 10)));
+    }
+
+    private static double bm25(double idf, double tf, double dl, double avgdl) {
+        double norm = 1.2 * (1.0 - 0.75 + 0.75 * dl / avgdl);
+        return idf * tf * 2.2 / (tf + norm);
+    }
+
+    private static void assertDescending(List<FileTermIndex.Hit> hits) {
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score(), "not descending at " + i);
+        }
+    }
+
+    private static List<Integer> docs(List<FileTermIndex.Hit> hits) {
+        return hits.stream().map(FileTermIndex.Hit::doc).toList();
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> out = new ArrayList<>();
+        FileTermIndex.tokenize(text, out::add);
+        return out;
+    }
+
+    private static FileTermIndex index(String... contents) {
+        List<UUID> ids = IntStream.range(0, contents.length).mapToObj(i -> UUID.randomUUID()).toList();
+        List<Map<String, Object>> metadata = IntStream.range(0, contents.length).mapToObj(i -> Map.<String, Object>of()).toList();
+        return new FileTermIndex(ids, List.of(contents), metadata);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.util.Random;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Connection and synthetic data for the benchmarks that need a live pgvector instance (the docker-compose one by
+ * default). Override with {@code -Dbench.pg.url=... -Dbench.pg.user=... -Dbench.pg.password=...}; the table must
+ * have the docker/init.sql layout. Point them at a scratch database: rows are written to and deleted from
+ * {@code public.rag_chunks} under a benchmark fileId.
+ */
+final class BenchPostgres {
+
+    static final String SCHEMA = "public";
+    static final String TABLE = "rag_chunks";
+    static final int DIMENSIONS = 768;
+
+    private BenchPostgres() {
+    }
+
+    /**
+     * One connection for the whole run, so session settings stick and no pool cost is measured.
+     */
+    static SingleConnectionDataSource dataSource() {
+        SingleConnectionDataSource ds = new SingleConnectionDataSource(
+                System.getProperty("bench.pg.url", "jdbc:postgresql://localhost:5432/hybridrag"),
+                System.getProperty("bench.pg.user", "hybridrag"),
+                System.getProperty("bench.pg.password", "hybridrag"),
+                true);
+        ds.setAutoCommit(true);
+        return ds;
+    }
+
+    static JdbcTemplate jdbc(SingleConnectionDataSource ds) {
+        return new JdbcTemplate(ds);
+    }
+
+    /**
+     * Chunk-sized text (~1.2k chars, roughly a 320-token window) from a small vocabulary.
+     */
+    static String content(Random rnd) {
+        StringBuilder sb = new StringBuilder(1300);
+        while (sb.length() < 1200) {
+            int len = 2 + rnd.nextInt(9);
+            for (int i = 0; i < len; i++) {
+                sb.append((char) ('a' + rnd.nextInt(26)));
+            }
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@code n} unit vectors around {@code clusters} random centres, so nearest neighbours are meaningful.
+     */
+    static float[][] clustered(Random rnd, int n, int clusters, float spread) {
+        float[][] centres = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            centres[c] = gaussian(rnd, 1.0f);
+        }
+        float[][] out = new float[n][];
+        for (int i = 0; i < n; i++) {
+            float[] centre = centres[rnd.nextInt(clusters)];
+            float[] v = gaussian(rnd, spread);
+            for (int d = 0; d < DIMENSIONS; d++) {
+                v[d] += centre[d];
+            }
+            out[i] = normalize(v);
+        }
+        return out;
+    }
+
+    private static float[] gaussian(Random rnd, float scale) {
+        float[] v = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            v[d] = (float) rnd.nextGaussian() * scale;
+        }
+        return v;
+    }
+
+    private static float[] normalize(float[] v) {
+        double sum = 0;
+        for (float f : v) {
+            sum += f * f;
+        }
+        float inv = (float) (1.0 / Math.sqrt(sum));
+        for (int d = 0; d < v.length; d++) {
+            v[d] *= inv;
+        }
+        return v;
+    }
+}
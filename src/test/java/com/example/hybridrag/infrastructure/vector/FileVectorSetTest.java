@@ -0,0 +1,157 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FileVectorSetTest {
+
+    private static final int DIMS = 32;
+
+    @Test
+    void exactSearchReturnsTopKBySimilarity() {
+        Random rnd = new Random(17);
+        List<float[]> embeddings = randomVectors(rnd, 500, DIMS);
+        FileVectorSet set = build(embeddings, Integer.MAX_VALUE);
+        float[] query = unit(randomVector(rnd, DIMS));
+
+        List<FileVectorSet.Hit> hits = set.search(query, 10, 100);
+
+        assertFalse(set.indexed());
+        assertEquals(exactTopK(embeddings, query, 10), hits.stream().map(FileVectorSet.Hit::row).toList());
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).similarity() >= hits.get(i).similarity());
+        }
+        assertEquals(cosine(embeddings.get(hits.get(0).row()), query), hits.get(0).similarity(), 1e-5);
+    }
+
+    @Test
+    void exactSearchWithKAboveSizeReturnsEveryRow() {
+        Random rnd = new Random(3);
+        FileVectorSet set = build(randomVectors(rnd, 7, DIMS), Integer.MAX_VALUE);
+
+        List<FileVectorSet.Hit> hits = set.search(unit(randomVector(rnd, DIMS)), 50, 100);
+
+        assertEquals(7, hits.size());
+        assertEquals(7, hits.stream().map(FileVectorSet.Hit::row).distinct().count());
+    }
+
+    @Test
+    void nonPositiveKReturnsNothing() {
+        Random rnd = new Random(5);
+        List<float[]> embeddings = randomVectors(rnd, 40, DIMS);
+        float[] query = unit(randomVector(rnd, DIMS));
+
+        for (FileVectorSet set : List.of(build(embeddings, Integer.MAX_VALUE), build(embeddings, 0))) {
+            assertEquals(List.of(), set.search(query, 0, 50));
+            assertEquals(List.of(), set.search(query, -3, 50));
+        }
+    }
+
+    @Test
+    void hnswRecallAgainstExactSearch() {
+        // Clustered data (as chunk embeddings of one document are) is the harder case for graph connectivity.
+        Random rnd = new Random(42);
+        int n = 5_000;
+        List<float[]> centres = randomVectors(rnd, 50, DIMS);
+        List<float[]> embeddings = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            float[] c = centres.get(rnd.nextInt(centres.size()));
+            float[] v = new float[DIMS];
+            for (int d = 0; d < DIMS; d++) {
+                v[d] = c[d] + 0.3f * (float) rnd.nextGaussian();
+            }
+            embeddings.add(v);
+        }
+        FileVectorSet set = build(embeddings, 0);
+
+        int queries = 200;
+        int k = 10;
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = unit(randomVector(rnd, DIMS));
+            Set<Integer> expected = new HashSet<>(exactTopK(embeddings, query, k));
+            for (FileVectorSet.Hit h : set.search(query, k, 100)) {
+                if (expected.contains(h.row())) {
+                    found++;
+                }
+            }
+        }
+        double recall = (double) found / (queries * k);
+
+        assertTrue(set.indexed());
+        assertTrue(recall >= 0.9, "recall@10 at ef=100 was " + recall);
+    }
+
+    @Test
+    void hnswSearchOfAStoredRowFindsItFirst() {
+        Random rnd = new Random(8);
+        List<float[]> embeddings = randomVectors(rnd, 2_000, DIMS);
+        FileVectorSet set = build(embeddings, 0);
+
+        for (int row = 0; row < embeddings.size(); row += 97) {
+            List<FileVectorSet.Hit> hits = set.search(unit(embeddings.get(row)), 1, 50);
+            assertEquals(row, hits.get(0).row());
+        }
+    }
+
+    private static FileVectorSet build(List<float[]> embeddings, int hnswMinRows) {
+        int n = embeddings.size();
+        List<UUID> ids = IntStream.range(0, n).mapToObj(i -> UUID.randomUUID()).toList();
+        List<String> contents = IntStream.range(0, n).mapToObj(i -> "chunk " + i).toList();
+        List<Map<String, Object>> metadata = IntStream.range(0, n).mapToObj(i -> Map.<String, Object>of()).toList();
+        return new FileVectorSet(ids, contents, metadata, embeddings, DIMS, hnswMinRows, 16, 100);
+    }
+
+    private static List<Integer> exactTopK(List<float[]> embeddings, float[] query, int k) {
+        return IntStream.range(0, embeddings.size()).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> cosine(embeddings.get(i), query)).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double na = 0;
+        double nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += (double) a[i] * b[i];
+            na += (double) a[i] * a[i];
+            nb += (double) b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+
+    private static List<float[]> randomVectors(Random rnd, int n, int dims) {
+        List<float[]> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(randomVector(rnd, dims));
+        }
+        return out;
+    }
+
+    private static float[] randomVector(Random rnd, int dims) {
+        float[] v = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            v[i] = (float) rnd.nextGaussian();
+        }
+        return v;
+    }
+
+    private static float[] unit(float[] v) {
+        float[] out = new float[v.length];
+        VectorMath.normalizeInto(v, out, 0);
+        return out;
+    }
+}
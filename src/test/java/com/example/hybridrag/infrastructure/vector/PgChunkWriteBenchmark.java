@@ -0,0 +1,122 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Writing one file's embedded chunks to pgvector: batched JDBC upsert vs binary COPY, both through
+ * {@link PgChunkWriter.Session} in ingest-pipeline sized batches, so COPY keeps one stream across batches as it
+ * does during ingest. Each invocation writes fresh ids and the rows are deleted afterwards; the HNSW and
+ * full-text index maintenance of the docker/init.sql table is part of the measured write.
+ * <p>
+ * Needs a live pgvector instance (see {@link BenchPostgres}). Not part of the test run; start {@link #main} from
+ * the IDE. Run the 100k case with few iterations, it takes minutes per write with the HNSW index in place.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class PgChunkWriteBenchmark {
+
+    private static final int PIPELINE_BATCH = 32;
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"jdbc", "copy"})
+    public String writeMode;
+
+    private SingleConnectionDataSource dataSource;
+    private PgChunkWriter writer;
+    private String fileId;
+    private String[] contents;
+    private float[][] vectors;
+    private List<List<EmbeddedChunk>> batches;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchPostgres.dataSource();
+        JdbcTemplate jdbc = BenchPostgres.jdbc(dataSource);
+        ObjectMapper objectMapper = new ObjectMapper();
+        PgCopyLoader copyLoader = new PgCopyLoader(jdbc, objectMapper, BenchPostgres.SCHEMA, BenchPostgres.TABLE, 5000);
+        writer = new PgChunkWriter(jdbc, objectMapper, copyLoader, BenchPostgres.SCHEMA, BenchPostgres.TABLE, writeMode);
+
+        Random rnd = new Random(17);
+        contents = new String[chunks];
+        for (int i = 0; i < chunks; i++) {
+            contents[i] = BenchPostgres.content(rnd);
+        }
+        vectors = BenchPostgres.clustered(rnd, chunks, 64, 0.3f);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshRows() {
+        // COPY cannot upsert, so every write gets new ids under a new fileId.
+        fileId = "bench-write-" + UUID.randomUUID();
+        batches = new ArrayList<>();
+        List<EmbeddedChunk> batch = new ArrayList<>(PIPELINE_BATCH);
+        for (int i = 0; i < chunks; i++) {
+            Map<String, Object> metadata = Map.of("fileId", fileId, "chunkIndex", i, "pageStart", 1, "pageEnd", 1);
+            batch.add(new EmbeddedChunk(UUID.randomUUID(), contents[i], metadata, vectors[i]));
+            if (batch.size() == PIPELINE_BATCH) {
+                batches.add(batch);
+                batch = new ArrayList<>(PIPELINE_BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+    }
+
+    @Benchmark
+    public void write() {
+        PgChunkWriter.Session session = writer.open();
+        try {
+            for (List<EmbeddedChunk> batch : batches) {
+                session.write(batch);
+            }
+            session.finish();
+        } finally {
+            session.abort();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteRows() {
+        writer.deleteByFileId(fileId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PgChunkWriteBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Decoding one MMR candidate set: the old {@code embedding::text} parse into double[] vs
+ * {@link PgVectors#decode} of {@code vector_send(embedding)}. Only the client-side decode is measured; the
+ * inputs are what the JDBC driver hands over for each form.
+ * <p>
+ * Not part of the test run; start {@link #main} from the IDE (add {@code -prof gc} for allocation per op).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PgVectorsDecodeBenchmark {
+
+    @Param({"48"})
+    public int candidates;
+
+    @Param({"768"})
+    public int dimensions;
+
+    private String[] text;
+    private byte[][] binary;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(11);
+        text = new String[candidates];
+        binary = new byte[candidates][];
+        for (int i = 0; i < candidates; i++) {
+            float[] v = new float[dimensions];
+            StringBuilder sb = new StringBuilder("[");
+            ByteBuffer buf = ByteBuffer.allocate(4 + dimensions * Float.BYTES);
+            buf.putShort((short) dimensions).putShort((short) 0);
+            for (int d = 0; d < dimensions; d++) {
+                v[d] = (float) rnd.nextGaussian() * 0.05f;
+                if (d > 0) {
+                    sb.append(',');
+                }
+                // pgvector's text output is the shortest float representation, as Float.toString gives
+                sb.append(v[d]);
+                buf.putFloat(v[d]);
+            }
+            text[i] = sb.append(']').toString();
+            binary[i] = buf.array();
+        }
+    }
+
+    @Benchmark
+    public void legacyTextParse(Blackhole bh) {
+        for (String s : text) {
+            bh.consume(parsePgVectorText(s));
+        }
+    }
+
+    @Benchmark
+    public void binaryDecode(Blackhole bh) {
+        for (byte[] b : binary) {
+            bh.consume(PgVectors.decode(b));
+        }
+    }
+
+    // The decoder PgVectors.decode replaced (pgvector text format: [0.1,0.2,...]).
+    private static double[] parsePgVectorText(String text) {
+        if (text == null) {
+            return null;
+        }
+        String s = text.trim();
+        if (s.startsWith("[")) {
+            s = s.substring(1);
+        }
+        if (s.endsWith("]")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        s = s.trim();
+        if (s.isEmpty()) {
+            return null;
+        }
+        String[] parts = s.split(",");
+        double[] v = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            v[i] = Double.parseDouble(parts[i].trim());
+        }
+        return v;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PgVectorsDecodeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
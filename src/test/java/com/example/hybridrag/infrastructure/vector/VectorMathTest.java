@@ -0,0 +1,94 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class VectorMathTest {
+
+    @Test
+    void simdFlagFollowsSystemProperty() {
+        boolean requested = Boolean.parseBoolean(System.getProperty("hybridrag.simd", "true"));
+        boolean moduleLoaded = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+        assertEquals(requested && moduleLoaded, VectorMath.simdEnabled());
+    }
+
+    @Test
+    void dotMatchesDoublePrecisionReferenceAcrossLengthsAndOffsets() {
+        Random rnd = new Random(3);
+        // Lengths around every common lane count, so both the vector loop and the scalar tail are hit.
+        for (int length = 0; length <= 70; length++) {
+            for (int offset : new int[]{0, 1, 5}) {
+                float[] a = random(rnd, offset + length);
+                float[] b = random(rnd, offset + length);
+                double expected = 0;
+                for (int i = 0; i < length; i++) {
+                    expected += (double) a[offset + i] * b[offset + i];
+                }
+                float tolerance = 1e-4f * Math.max(1, length);
+
+                assertEquals(expected, VectorMath.dot(a, offset, b, offset, length), tolerance, "len=" + length);
+                assertEquals(expected, VectorMath.scalarDot(a, offset, b, offset, length), tolerance, "len=" + length);
+            }
+        }
+    }
+
+    @Test
+    void simdKernelAgreesWithScalarKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return;
+        }
+        Random rnd = new Random(9);
+        for (int length : new int[]{1, 3, 7, 8, 15, 16, 17, 31, 64, 384, 768, 1023}) {
+            float[] a = random(rnd, length);
+            float[] b = random(rnd, length);
+
+            assertEquals(VectorMath.scalarDot(a, 0, b, 0, length), SimdVectorMath.dot(a, 0, b, 0, length),
+                    1e-3f * length, "len=" + length);
+        }
+    }
+
+    @Test
+    void offHeapDotMatchesArrayDot() {
+        Random rnd = new Random(21);
+        float[] rows = random(rnd, 5 * 37);
+        FloatBuffer buffer = ByteBuffer.allocateDirect(rows.length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(0, rows);
+        float[] query = random(rnd, 37);
+
+        for (int row = 0; row < 5; row++) {
+            assertEquals(VectorMath.scalarDot(query, 0, rows, row * 37, 37), VectorMath.dot(query, 0, buffer, row * 37, 37),
+                    1e-3f, "row " + row);
+        }
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void mismatchedLengthsGiveZero() {
+        assertEquals(0f, VectorMath.dot(new float[]{1, 2}, new float[]{1, 2, 3}));
+    }
+
+    @Test
+    void normalizeIntoScalesToUnitLengthAndLeavesZeroVectorZero() {
+        float[] dst = new float[5];
+
+        VectorMath.normalizeInto(new float[]{3, 4}, dst, 1);
+        VectorMath.normalizeInto(new float[]{0, 0}, dst, 3);
+
+        assertArrayEquals(new float[]{0, 0.6f, 0.8f, 0, 0}, dst, 1e-6f);
+    }
+
+    private static float[] random(Random rnd, int n) {
+        float[] v = new float[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = (float) rnd.nextGaussian();
+        }
+        return v;
+    }
+}
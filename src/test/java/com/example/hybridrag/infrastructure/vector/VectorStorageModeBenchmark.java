@@ -0,0 +1,192 @@
+package com.example.hybridrag.infrastructure.vector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Recall vs latency of the HNSW storage modes (vector, halfvec, binary with full-precision re-scoring) on one
+ * clustered synthetic file, using the candidate SQL {@link VectorSearchService} runs for each mode.
+ * <p>
+ * Setup loads the file with COPY, builds the mode's index if it is missing (the same definition
+ * {@link PgVectorIndexMigrator} uses) and prints recall@topK against brute-force cosine over all queries as
+ * {@code event=bench_recall}; the benchmark itself measures one search. ef_search and the re-score factor match
+ * the application defaults. The compact indexes are left in place for later runs.
+ * <p>
+ * Needs a live pgvector instance (see {@link BenchPostgres}). Not part of the test run; start {@link #main} from
+ * the IDE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-modules", "jdk.incubator.vector"})
+public class VectorStorageModeBenchmark {
+
+    private static final int QUERIES = 200;
+    private static final int EF_SEARCH = 100;
+    private static final int BINARY_RESCORE_FACTOR = 8;
+
+    @Param({"vector", "halfvec", "binary"})
+    public String mode;
+
+    @Param({"50000"})
+    public int rows;
+
+    @Param({"10"})
+    public int topK;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private VectorStorageMode storage;
+    private String fileId;
+    private PreparedStatement search;
+    private PGvector[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        storage = VectorStorageMode.parse(mode);
+        dataSource = BenchPostgres.dataSource();
+        jdbc = BenchPostgres.jdbc(dataSource);
+        fileId = "bench-storage-" + rows;
+        String qualified = BenchPostgres.SCHEMA + "." + BenchPostgres.TABLE;
+
+        Random rnd = new Random(23);
+        float[][] vectors = BenchPostgres.clustered(rnd, rows, 256, 0.35f);
+        UUID[] ids = new UUID[rows];
+        List<EmbeddedChunk> corpus = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            ids[i] = UUID.randomUUID();
+            corpus.add(new EmbeddedChunk(ids[i], "chunk " + i, Map.of("fileId", fileId, "chunkIndex", i), vectors[i]));
+        }
+        jdbc.update("DELETE FROM " + qualified + " WHERE file_id = ?", fileId);
+        new PgCopyLoader(jdbc, new ObjectMapper(), BenchPostgres.SCHEMA, BenchPostgres.TABLE, 5000).copy(corpus);
+        jdbc.execute("CREATE INDEX IF NOT EXISTS " + storage.indexName(BenchPostgres.TABLE) + " ON " + qualified
+                + " USING " + storage.indexDefinition(BenchPostgres.DIMENSIONS));
+        jdbc.execute("ANALYZE " + qualified);
+
+        Connection conn = dataSource.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET hnsw.ef_search = " + Math.max(EF_SEARCH, candidates()));
+            st.execute("SET hnsw.iterative_scan = relaxed_order");
+        }
+        search = conn.prepareStatement(VectorSearchService.hnswCandidateSql(
+                storage, qualified, BenchPostgres.DIMENSIONS, "?"));
+
+        // Queries near stored chunks, as real questions land near the passages that answer them.
+        float[][] q = new float[QUERIES][];
+        queries = new PGvector[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            float[] base = vectors[rnd.nextInt(rows)];
+            float[] v = new float[base.length];
+            for (int d = 0; d < v.length; d++) {
+                v[d] = base[d] + (float) rnd.nextGaussian() * 0.02f;
+            }
+            q[i] = v;
+            queries[i] = new PGvector(v);
+        }
+
+        double recall = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            Set<UUID> expected = exactTop(q[i], vectors, ids);
+            Set<UUID> found = new HashSet<>(search(queries[i]));
+            found.retainAll(expected);
+            recall += (double) found.size() / expected.size();
+        }
+        System.out.printf("event=bench_recall mode=%s rows=%d topK=%d efSearch=%d recall=%.4f%n",
+                storage, rows, topK, Math.max(EF_SEARCH, candidates()), recall / QUERIES);
+    }
+
+    @Benchmark
+    public List<UUID> search() throws SQLException {
+        PGvector q = queries[next];
+        next = (next + 1) % QUERIES;
+        return search(q);
+    }
+
+    private List<UUID> search(PGvector q) throws SQLException {
+        // Parameter order of VectorSearchService.hnswCandidates.
+        int i = 1;
+        search.setObject(i++, q);
+        search.setString(i++, fileId);
+        if (storage != VectorStorageMode.VECTOR) {
+            search.setObject(i++, q);
+        }
+        if (storage == VectorStorageMode.BINARY) {
+            search.setInt(i++, candidates());
+        }
+        search.setInt(i, topK);
+        List<UUID> out = new ArrayList<>(topK);
+        try (ResultSet rs = search.executeQuery()) {
+            while (rs.next()) {
+                out.add(rs.getObject("id", UUID.class));
+            }
+        }
+        return out;
+    }
+
+    private int candidates() {
+        return storage == VectorStorageMode.BINARY ? topK * BINARY_RESCORE_FACTOR : topK;
+    }
+
+    private Set<UUID> exactTop(float[] query, float[][] vectors, UUID[] ids) {
+        // Stored vectors are unit length: the largest dot products are the smallest cosine distances.
+        PriorityQueue<Integer> heap = new PriorityQueue<>(topK + 1, (a, b) -> Float.compare(
+                VectorMath.dot(query, vectors[a]), VectorMath.dot(query, vectors[b])));
+        for (int r = 0; r < vectors.length; r++) {
+            heap.add(r);
+            if (heap.size() > topK) {
+                heap.poll();
+            }
+        }
+        Set<UUID> out = new HashSet<>();
+        for (int r : heap) {
+            out.add(ids[r]);
+        }
+        return out;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        search.close();
+        jdbc.update("DELETE FROM " + BenchPostgres.SCHEMA + "." + BenchPostgres.TABLE + " WHERE file_id = ?", fileId);
+        dataSource.destroy();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VectorStorageModeBenchmark.class.getSimpleName()).build()).run();
+    }
+}